@@ -0,0 +1,107 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.name.Names;
+
+/**
+ * <p>Measures the lookup of the {@link TestInterceptor}s
+ * in an injector with thousands of bindings.</p>
+ * @author alessandro.simi@gmail.com
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InterceptorWrapperBenchmark {
+
+	@Param({"1000", "10000"})
+	public int bindings;
+	
+	private Injector injector;
+	
+	@Setup
+	public void setup() {
+		List<Module> modules = new ArrayList<Module>();
+		modules.add(new Bindings(bindings));
+		modules.add(new FirstModule());
+		modules.add(new SecondModule());
+		injector = Guice.createInjector(modules);
+	}
+	
+	@Benchmark
+	public TestInterceptor.Wrapper addInterceptorsFromModules() {
+		TestInterceptor.Wrapper wrapper = new TestInterceptor.Wrapper();
+		wrapper.addInterceptorsFromModules(injector);
+		return wrapper;
+	}
+	
+	public static class Bindings extends AbstractModule {
+		
+		private final int bindings;
+		
+		Bindings(int bindings) {
+			this.bindings = bindings;
+		}
+		
+		@Override
+		protected void configure() {
+			for (int i = 0; i < bindings; i++) {
+				bind(String.class).annotatedWith(Names.named("binding" + i)).toInstance("value" + i);
+			}
+		}
+		
+	}
+	
+	public static class FirstModule extends AbstractTestModule {
+		@Override
+		protected void configureTest() {
+			bindTestInterceptor(Interceptor.class);
+		}
+	}
+	
+	public static class SecondModule extends AbstractTestModule {
+		@Override
+		protected void configureTest() {
+			bindTestInterceptor(Interceptor.class);
+		}
+	}
+	
+	public static class Interceptor extends TestInterceptor {}
+	
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+/**
+ * <p>Measures the conversion of a method in a message with
+ * the chain of the single converters, the {@link MethodConverter.Global}
+ * and the {@link MethodConverter.SinglePass} converters.</p>
+ * @author alessandro.simi@gmail.com
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MethodConverterBenchmark {
+
+	@Param({"typical", "camelCase", "pathological"})
+	public String name;
+	
+	private Method method;
+	private Object[] arguments;
+	
+	private MethodConverter.ReplaceCamelCaseWithSpace camelCase;
+	private MethodConverter.ReplaceDoubleUnderscoreWithCommaSpace doubleUnderscore;
+	private MethodConverter.ReplaceUnderscoreAndDollarWithSpace underscoreAndDollar;
+	private MethodConverter.ReplaceArguments replaceArguments;
+	private MethodConverter.RemoveMultiSpacesAndTrim multiSpaces;
+	private MethodConverter.SetFirstLetterUpperCase firstLetterUpperCase;
+	private MethodConverter.Global global;
+	private MethodConverter.SinglePass singlePass;
+	
+	@Setup
+	public void setup() {
+		Injector injector = Guice.createInjector();
+		camelCase = injector.getInstance(MethodConverter.ReplaceCamelCaseWithSpace.class);
+		doubleUnderscore = injector.getInstance(MethodConverter.ReplaceDoubleUnderscoreWithCommaSpace.class);
+		underscoreAndDollar = injector.getInstance(MethodConverter.ReplaceUnderscoreAndDollarWithSpace.class);
+		replaceArguments = injector.getInstance(MethodConverter.ReplaceArguments.class);
+		multiSpaces = injector.getInstance(MethodConverter.RemoveMultiSpacesAndTrim.class);
+		firstLetterUpperCase = injector.getInstance(MethodConverter.SetFirstLetterUpperCase.class);
+		global = injector.getInstance(MethodConverter.Global.class);
+		singlePass = injector.getInstance(MethodConverter.SinglePass.class);
+		if ("typical".equals(name)) {
+			method = find("the_user_$1_logs_in_with_the_password_$2");
+			arguments = new Object[] {"bob", "secret"};
+		} else if ("camelCase".equals(name)) {
+			method = find("theUserLogsInAndSeesTheDashboardWithAllTheWidgets");
+			arguments = new Object[0];
+		} else {
+			List<Integer> numbers = new ArrayList<Integer>();
+			for (int i = 0; i < 100; i++) {
+				numbers.add(i);
+			}
+			method = find("a__b___c____d_$1_$2_$3_$4_eAndF$1G__$3_$5");
+			arguments = new Object[] {numbers, new String[] {"one", "two", "three"}, new Date(0), null, new Bean("name", 1)};
+		}
+	}
+	
+	private static Method find(String name) {
+		for (Method method : Steps.class.getDeclaredMethods()) {
+			if (method.getName().equals(name)) {
+				return method;
+			}
+		}
+		throw new IllegalArgumentException(name);
+	}
+	
+	/**
+	 * The chain of the single converters.
+	 */
+	@Benchmark
+	public String converters() {
+		String message = method.getName();
+		message = camelCase.convert(message, method, arguments);
+		message = doubleUnderscore.convert(message, method, arguments);
+		message = underscoreAndDollar.convert(message, method, arguments);
+		message = replaceArguments.convert(message, method, arguments);
+		message = multiSpaces.convert(message, method, arguments);
+		return firstLetterUpperCase.convert(message, method, arguments);
+	}
+	
+	@Benchmark
+	public String global() {
+		return global.convert(method.getName(), method, arguments);
+	}
+	
+	@Benchmark
+	public String singlePass() {
+		return singlePass.convert(method.getName(), method, arguments);
+	}
+	
+	/**
+	 * The single pass conversion without the compiled template.
+	 */
+	@Benchmark
+	public String singlePassWithoutTemplate() throws Exception {
+		return MethodTemplate.render(method.getName(), method, arguments);
+	}
+	
+	static class Steps {
+		
+		void the_user_$1_logs_in_with_the_password_$2(String user, String password) {}
+		
+		void theUserLogsInAndSeesTheDashboardWithAllTheWidgets() {}
+		
+		void a__b___c____d_$1_$2_$3_$4_eAndF$1G__$3_$5(List<Integer> numbers, String[] strings, Date date, Object empty, @Tell("a bean with ${name} and ${value}") Bean bean) {}
+		
+	}
+	
+	static class Bean {
+		
+		final String name;
+		final int value;
+		
+		Bean(String name, int value) {
+			this.name = name;
+			this.value = value;
+		}
+		
+	}
+	
+}
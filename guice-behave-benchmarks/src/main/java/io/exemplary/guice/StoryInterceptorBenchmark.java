@@ -0,0 +1,103 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.runner.RunWith;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+/**
+ * <p>Measures the overhead of the {@link StoryInterceptor}
+ * on a step compared with the direct call of the step.</p>
+ * @author alessandro.simi@gmail.com
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StoryInterceptorBenchmark {
+
+	private Steps direct;
+	private Steps intercepted;
+	
+	@Setup
+	public void setup() {
+		Injector injector = Guice.createInjector(new StoryInterceptor.Module(), new Module());
+		direct = new Steps();
+		intercepted = injector.getInstance(Steps.class);
+	}
+	
+	@Benchmark
+	public int direct() {
+		return direct.the_step_$1_returns_the_number(1);
+	}
+	
+	@Benchmark
+	public int intercepted() {
+		return intercepted.the_step_$1_returns_the_number(1);
+	}
+	
+	@RunWith(StoryRunner.class)
+	public static class Steps {
+		
+		public int the_step_$1_returns_the_number(int number) {
+			return number;
+		}
+		
+	}
+	
+	public static class Module extends AbstractStoryModule {
+		@Override
+		protected void configureStory() {
+			bindStoryPrinter(SilentStoryPrinter.class);
+		}
+	}
+	
+	/**
+	 * Converts the messages without printing them.
+	 */
+	public static class SilentStoryPrinter implements AbstractStoryModule.StoryPrinter {
+
+		@Override
+		public void onStoryBegins(String className, String story) {}
+
+		@Override
+		public void onStepBegins(String className, String stepName) {}
+
+		@Override
+		public void onStepEnds(String className, String stepName) {}
+
+		@Override
+		public void onStoryEnds(String className, String story) {}
+		
+	}
+	
+}
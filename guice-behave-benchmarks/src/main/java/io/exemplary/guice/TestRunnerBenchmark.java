@@ -0,0 +1,76 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.junit.runners.model.InitializationError;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.inject.name.Names;
+
+/**
+ * <p>Measures the creation of a {@link TestRunner} when the
+ * injector of its modules is already cached (warm) and when
+ * it has to be created (cold).</p>
+ * @author alessandro.simi@gmail.com
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TestRunnerBenchmark {
+
+	@Benchmark
+	public TestRunner warm() throws InitializationError {
+		return new TestRunner(Target.class);
+	}
+	
+	@Benchmark
+	public TestRunner cold() throws InitializationError {
+		TestRunner.clearInjectors();
+		return new TestRunner(Target.class);
+	}
+	
+	@Modules(Module.class)
+	public static class Target {
+		@Test public void test() {}
+	}
+	
+	public static class Module extends AbstractTestModule {
+		@Override
+		protected void configureTest() {
+			for (int i = 0; i < 100; i++) {
+				bind(String.class).annotatedWith(Names.named("binding" + i)).toInstance("value" + i);
+			}
+			bindTestInterceptor(Interceptor.class);
+		}
+	}
+	
+	public static class Interceptor extends TestInterceptor {}
+	
+}
@@ -15,12 +15,21 @@
  */
 package io.exemplary.guice;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Method;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import org.junit.runners.model.InitializationError;
+import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.inject.Guice;
 import com.google.inject.Inject;
+import com.google.inject.Scopes;
 
 /**
  * <p>This is a {@link Guice} module where is possible
@@ -37,11 +46,20 @@ import com.google.inject.Inject;
  * }</pre>
  * <p>The {@link StoryPrinter} interface specifies how print
  * story events and {@link StoryConverter} interface converts
- * the events in messages printable by the printer.</p>
+ * the events in messages printable by the printer. The printer
+ * can also print in background with {@link #bindAsyncStoryPrinter(Class)}
+ * write the events as JSON lines with {@link #bindJsonStoryPrinter(File)}
+ * or as binary records with {@link #bindBinaryStoryPrinter(File)}.</p>
  * @author alessandro.simi@gmail.com
  */
 public abstract class AbstractStoryModule extends AbstractTestModule {
 
+	/**
+	 * The printers writing a file, shared by all the injectors
+	 * binding them so they don't overwrite each other.
+	 */
+	private static final Registry<StoryPrinter> filePrinters = new Registry<StoryPrinter>();
+	
 	protected abstract void configureStory();
 	
 	@Override
@@ -58,6 +76,91 @@ public abstract class AbstractStoryModule extends AbstractTestModule {
 		bind(StoryPrinter.class).to(storyPrinter);
 	}
 	
+	/**
+	 * Binds an {@link AsyncStoryPrinter} printing in background
+	 * with the implementation of {@link StoryPrinter}, blocking
+	 * the test when the queue of the events is full.
+	 * @param storyPrinter class of the implementation.
+	 */
+	protected final void bindAsyncStoryPrinter(Class<? extends StoryPrinter> storyPrinter) {
+		bindAsyncStoryPrinter(storyPrinter, AsyncStoryPrinter.Policy.BLOCK, AsyncStoryPrinter.DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Binds an {@link AsyncStoryPrinter} printing in background
+	 * with the implementation of {@link StoryPrinter}.
+	 * @param storyPrinter class of the implementation.
+	 * @param policy what to do when the queue is full.
+	 * @param capacity the size of the queue of the events.
+	 */
+	protected final void bindAsyncStoryPrinter(Class<? extends StoryPrinter> storyPrinter, AsyncStoryPrinter.Policy policy, int capacity) {
+		bind(StoryPrinter.class).toProvider(new AsyncStoryPrinter.Provider(storyPrinter, policy, capacity)).in(Scopes.SINGLETON);
+	}
+	
+	/**
+	 * Binds a {@link JsonStoryPrinter} writing the
+	 * events as JSON lines in the file.
+	 * @param file the file of the events.
+	 */
+	protected final void bindJsonStoryPrinter(File file) {
+		bindJsonStoryPrinter(file, false, 0);
+	}
+	
+	/**
+	 * Binds a {@link JsonStoryPrinter} writing the
+	 * events as JSON lines in the file. The injectors
+	 * binding the same file share the same printer.
+	 * @param file the file of the events.
+	 * @param gzip true to compress the file with gzip.
+	 * @param maxSize the size in bytes of the file rolling it,
+	 * zero to never roll it.
+	 */
+	protected final void bindJsonStoryPrinter(final File file, final boolean gzip, final long maxSize) {
+		bind(StoryPrinter.class).toInstance(filePrinter(JsonStoryPrinter.class, file, new Registry.Builder<StoryPrinter>() {
+			@Override
+			public StoryPrinter build() {
+				return new JsonStoryPrinter(file, gzip, maxSize);
+			}
+		}));
+	}
+	
+	/**
+	 * Binds a {@link BinaryStoryPrinter} writing the events as
+	 * binary records in the file, rendered as text after the
+	 * run by the {@link BinaryStoryRenderer}. The injectors
+	 * binding the same file share the same printer.
+	 * @param file the file of the events.
+	 */
+	protected final void bindBinaryStoryPrinter(final File file) {
+		bind(StoryPrinter.class).toInstance(filePrinter(BinaryStoryPrinter.class, file, new Registry.Builder<StoryPrinter>() {
+			@Override
+			public StoryPrinter build() {
+				return new BinaryStoryPrinter(file);
+			}
+		}));
+	}
+	
+	/**
+	 * The module is configured by every injector created with
+	 * it, so the printer of a file is created only once and
+	 * shared by all the injectors writing the same file.
+	 * @return the printer of the file, built by the builder
+	 * the first time the file is bound.
+	 */
+	private static StoryPrinter filePrinter(Class<? extends StoryPrinter> type, File file, Registry.Builder<StoryPrinter> builder) {
+		String path;
+		try {
+			path = file.getCanonicalPath();
+		} catch (IOException e) {
+			path = file.getAbsolutePath();
+		}
+		try {
+			return filePrinters.get(type.getName() + ":" + path, builder);
+		} catch (InitializationError e) {
+			throw new IllegalStateException("Impossible to create the printer of " + file, e);
+		}
+	}
+	
 	/**
 	 * Contains the four events triggered during a test.
 	 * @author alessandro.simi@gmail.com
@@ -72,12 +175,52 @@ public abstract class AbstractStoryModule extends AbstractTestModule {
 		
 		void onStoryEnds(String className, String story);
 	
-		public static class Default implements StoryPrinter {
+		/**
+		 * <p>Logs the beginning of the stories and of the steps in
+		 * the <code>story.</code> loggers followed by the class name.
+		 * The messages are converted only when the logger of the
+		 * class prints the info level.</p>
+		 * <p>The events whose method is overridden by a subclass are
+		 * always converted and notified to the subclass, as the
+		 * other {@link StoryPrinter}s.</p>
+		 */
+		public static class Default implements StoryEventPrinter {
 
 			private final static String PREFIX = "story.";
 			private static final String SPACE = "  ";
 			private final static String TITLE = "TitleSpace";
 			private static final String BY = "by ";	
+			
+			private final Set<StoryEvent.Type> overridden = EnumSet.noneOf(StoryEvent.Type.class);
+			
+			public Default() {
+				overrides(StoryEvent.Type.STORY_BEGINS, "onStoryBegins");
+				overrides(StoryEvent.Type.STEP_BEGINS, "onStepBegins");
+				overrides(StoryEvent.Type.STEP_ENDS, "onStepEnds");
+				overrides(StoryEvent.Type.STORY_ENDS, "onStoryEnds");
+			}
+			
+			private void overrides(StoryEvent.Type type, String name) {
+				try {
+					if (getClass().getMethod(name, String.class, String.class).getDeclaringClass() != Default.class) {
+						overridden.add(type);
+					}
+				} catch (NoSuchMethodException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+
+			@Override
+			public boolean consumes(StoryEvent.Type type) {
+				return type == StoryEvent.Type.STORY_BEGINS || type == StoryEvent.Type.STEP_BEGINS || overridden.contains(type);
+			}
+			
+			@Override
+			public void onEvent(StoryEvent event) {
+				if (consumes(event.getType()) && (overridden.contains(event.getType()) || logger(event.getClassName()).isInfoEnabled())) {
+					event.printMessage(this);
+				}
+			}
 
 			@Override
 			public void onStoryBegins(String className, String story) {
@@ -98,9 +241,20 @@ public abstract class AbstractStoryModule extends AbstractTestModule {
 			@Override
 			public void onStoryEnds(String className, String story) {}
 			
+			private final ConcurrentMap<String, Logger> loggers = new ConcurrentHashMap<String, Logger>();
+			
 			private void log(String className, String message) {
-				LoggerFactory.getLogger(PREFIX + className).info(message);
-			} 
+				logger(className).info(message);
+			}
+			
+			private Logger logger(String className) {
+				Logger logger = loggers.get(className);
+				if (logger == null) {
+					logger = LoggerFactory.getLogger(PREFIX + className);
+					loggers.put(className, logger);
+				}
+				return logger;
+			}
 			
 		}
 		
@@ -128,7 +282,7 @@ public abstract class AbstractStoryModule extends AbstractTestModule {
 		
 		public static class Default implements StoryConverter {
 
-			@Inject private MethodConverter.Global toMessage;
+			@Inject private MethodConverter.SinglePass toMessage;
 			
 			@Override
 			public String convertClass(Class<?> clazz) {
@@ -137,8 +291,26 @@ public abstract class AbstractStoryModule extends AbstractTestModule {
 
 			@Override
 			public String convertMethod(Method method, Object[] arguments) {
-				String message = toMessage(method, arguments);
-				Story story = method.getAnnotation(Story.class);
+				return toStory(method, toMessage(method, arguments));
+			}
+			
+			/**
+			 * Converts the method with the arguments formatted
+			 * by {@link MethodTemplate#format(Method, Object[])}.
+			 */
+			final String convertFormatted(Method method, String[] arguments) {
+				MethodTemplate template = MethodTemplate.of(method);
+				String message;
+				try {
+					message = template.render(arguments);
+				} catch (IllegalArgumentException e) {
+					message = template.message();
+				}
+				return toStory(method, message);
+			}
+			
+			private static String toStory(Method method, String message) {
+				Story story = MethodMetadata.of(method).getStory();
 				if (story != null) {
 					message = "Story \"" + message + "\"";
 					if (!story.id().isEmpty()) {
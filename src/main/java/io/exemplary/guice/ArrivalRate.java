@@ -0,0 +1,61 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Runs a {@link Story} as an open model load test: the story
+ * is launched at a constant rate, independently of how long the
+ * previous ones take, by a pool of threads each with its own
+ * instance of the test class.</p>
+ * <pre>
+ * &#64;Story &#64;ArrivalRate(value = 500, duration = 30)
+ * public void theUserBuysABook() { ... }</pre>
+ * <p>The latency is measured from the time the story should have
+ * started, so the stories waiting a free thread count as slow. The
+ * story runs once, printed, before the load. The rate achieved, the
+ * maximum backlog of stories waiting and the latencies are logged
+ * under the {@code story.benchmarks} logger.</p>
+ * @author alessandro.simi@gmail.com
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD})
+public @interface ArrivalRate {
+
+	/**
+	 * @return the stories launched per second, greater
+	 * than 0 and at most one every nanosecond.
+	 */
+	double value();
+	
+	/**
+	 * @return the duration of the load in the unit.
+	 */
+	long duration() default 10;
+	
+	TimeUnit unit() default TimeUnit.SECONDS;
+	
+	/**
+	 * @return the threads running the stories.
+	 */
+	int threads() default 16;
+	
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.Statement;
+
+/**
+ * <p>Launches the story of an {@link ArrivalRate} at its
+ * intended start times and logs the rate achieved, the
+ * backlog and the latencies from the intended starts.</p>
+ * <p>The rate achieved counts the stories launched during the
+ * launch window, so the stories still running after the last
+ * launch don't lower it.</p>
+ * @author alessandro.simi@gmail.com
+ */
+class ArrivalRateStatement extends Statement {
+
+	/**
+	 * The highest rate, one story every nanosecond.
+	 */
+	static final double MAXIMUM_RATE = TimeUnit.SECONDS.toNanos(1);
+	
+	/**
+	 * Adds an error for every {@link ArrivalRate} whose launches
+	 * would never end, so the class fails before running.
+	 */
+	static void validate(List<FrameworkMethod> methods, List<Throwable> errors) {
+		for (FrameworkMethod method : methods) {
+			ArrivalRate arrivalRate = method.getAnnotation(ArrivalRate.class);
+			if (arrivalRate == null) {
+				continue;
+			}
+			if (!(arrivalRate.value() > 0 && arrivalRate.value() <= MAXIMUM_RATE)) {
+				errors.add(new Exception("The arrival rate of " + method.getName() + " must be greater than 0 and at most " + (long) MAXIMUM_RATE + " stories per second, not " + arrivalRate.value()));
+			}
+			if (arrivalRate.threads() < 1) {
+				errors.add(new Exception("The arrival rate of " + method.getName() + " must run on at least one thread, not " + arrivalRate.threads()));
+			}
+		}
+	}
+
+	private final FrameworkMethod method;
+	private final Object test;
+	private final LoadStatement.Tests tests;
+	private final StoryInterceptor interceptor;
+	private final ArrivalRate arrivalRate;
+	private final String name;
+	private final boolean virtual;
+	
+	private final Histogram histogram = new Histogram();
+	private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+	
+	ArrivalRateStatement(FrameworkMethod method, Object test, LoadStatement.Tests tests, StoryInterceptor interceptor, ArrivalRate arrivalRate, String name, boolean virtual) {
+		this.method = method;
+		this.test = test;
+		this.tests = tests;
+		this.interceptor = interceptor;
+		this.arrivalRate = arrivalRate;
+		this.name = name;
+		this.virtual = virtual;
+	}
+	
+	/**
+	 * The test instance of every thread.
+	 */
+	private final ThreadLocal<Object> instances = new ThreadLocal<Object>();
+	
+	@Override
+	public void evaluate() throws Throwable {
+		method.invokeExplosively(test);
+		ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(arrivalRate.threads(), NamedThreadFactory.create(name + "-arrivals", virtual));
+		long period = (long) (TimeUnit.SECONDS.toNanos(1) / arrivalRate.value());
+		long duration = arrivalRate.unit().toNanos(arrivalRate.duration());
+		long timeout = Math.max(duration, TimeUnit.MINUTES.toNanos(1));
+		long begin = System.nanoTime();
+		long launches = 0;
+		long window;
+		int backlog = 0;
+		boolean terminated = false;
+		try {
+			for (long intended = begin; intended - begin < duration && failure.get() == null; intended += period) {
+				long wait;
+				while ((wait = intended - System.nanoTime()) > 0) {
+					LockSupport.parkNanos(wait);
+				}
+				executor.execute(new Arrival(intended));
+				launches++;
+				backlog = Math.max(backlog, executor.getQueue().size());
+			}
+			window = System.nanoTime() - begin;
+		} finally {
+			executor.shutdown();
+			try {
+				terminated = executor.awaitTermination(timeout, TimeUnit.NANOSECONDS);
+			} finally {
+				if (!terminated) {
+					executor.shutdownNow();
+				}
+			}
+		}
+		LoadStatement.logger.info(name + " rate=" + (long) arrivalRate.value() + " achieved=" + LoadStatement.throughput(launches, window)
+				+ " ops/s backlog=" + backlog + " " + histogram);
+		if (failure.get() != null) {
+			throw failure.get();
+		} else if (!terminated) {
+			throw new Exception("The stories of " + name + " are still running " + TimeUnit.NANOSECONDS.toSeconds(timeout) + " seconds after the last launch");
+		}
+	}
+	
+	/**
+	 * A story launched at its intended start time.
+	 */
+	private class Arrival implements Runnable {
+		
+		private final long intended;
+		
+		Arrival(long intended) {
+			this.intended = intended;
+		}
+
+		@Override
+		public void run() {
+			if (failure.get() != null) {
+				return;
+			}
+			try {
+				Object test = instances.get();
+				if (test == null) {
+					LoadStatement.mute(interceptor, true);
+					test = tests.create();
+					instances.set(test);
+				}
+				LoadStatement.invoke(method, test);
+				histogram.record(System.nanoTime() - intended);
+			} catch (Throwable throwable) {
+				failure.compareAndSet(null, throwable);
+			}
+		}
+		
+	}
+	
+}
@@ -0,0 +1,353 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+
+/**
+ * <p>Prints the story in background: the events are handed
+ * to a writer thread through a bounded queue and the writer
+ * converts and prints them with the delegate printer, so the
+ * test thread never waits the conversion or the I/O.</p>
+ * <pre>
+ * public class MyStoryModule extends AbstractStoryModule {
+ *   protected void configureStory() {
+ *     bindAsyncStoryPrinter(MyStoryPrinter.class, Policy.DROP, 4096);
+ *   }
+ * }</pre>
+ * <p>The {@link Policy} decides what happens when the queue is
+ * full. The events of the story title are never dropped. The
+ * queue is drained at the end of every test class and when
+ * the JVM shuts down.</p>
+ * <p>The arguments are formatted when the event happens, so
+ * the arguments changed by the test after the step are printed
+ * with the value they had. The message is converted later.</p>
+ * @author alessandro.simi@gmail.com
+ */
+public class AsyncStoryPrinter implements StoryEventPrinter, Flushable, Closeable {
+
+	/**
+	 * What to do when the queue is full.
+	 */
+	public static enum Policy {
+		/** Waits until the queue has space. */
+		BLOCK,
+		/** Drops the event. */
+		DROP,
+		/** Keeps one event every ten waiting for space and drops the others. */
+		SAMPLE
+	}
+	
+	static final int DEFAULT_CAPACITY = 1024;
+	static final int BATCH_SIZE = 128;
+	static final int SAMPLE_RATE = 10;
+	static final long WAIT_MILLIS = 100;
+	
+	private static final Logger logger = LoggerFactory.getLogger(AsyncStoryPrinter.class);
+	
+	private final AbstractStoryModule.StoryPrinter printer;
+	private final Policy policy;
+	private final BlockingQueue<Object> queue;
+	private final AtomicLong full = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	
+	private Thread writer;
+	private Thread hook;
+	
+	/**
+	 * @param printer the printer to delegate.
+	 * @param policy what to do when the queue is full.
+	 * @param capacity the size of the queue.
+	 */
+	public AsyncStoryPrinter(AbstractStoryModule.StoryPrinter printer, Policy policy, int capacity) {
+		this.printer = printer;
+		this.policy = policy;
+		this.queue = new ArrayBlockingQueue<Object>(capacity);
+	}
+	
+	@Override
+	public void onStoryBegins(String className, String story) {
+		onEvent(new StoryEvent(StoryEvent.Type.STORY_BEGINS, className, story));
+	}
+
+	@Override
+	public void onStepBegins(String className, String stepName) {
+		onEvent(new StoryEvent(StoryEvent.Type.STEP_BEGINS, className, stepName));
+	}
+
+	@Override
+	public void onStepEnds(String className, String stepName) {
+		onEvent(new StoryEvent(StoryEvent.Type.STEP_ENDS, className, stepName));
+	}
+
+	@Override
+	public void onStoryEnds(String className, String story) {
+		onEvent(new StoryEvent(StoryEvent.Type.STORY_ENDS, className, story));
+	}
+	
+	/**
+	 * @return the events consumed by the delegate printer,
+	 * the other events are never queued.
+	 */
+	@Override
+	public boolean consumes(StoryEvent.Type type) {
+		return !(printer instanceof StoryEventPrinter) || ((StoryEventPrinter) printer).consumes(type);
+	}
+	
+	@Override
+	public void onEvent(StoryEvent event) {
+		event = event.snapshot();
+		start();
+		if (queue.offer(event)) {
+			return;
+		}
+		if (policy == Policy.BLOCK || isStoryEvent(event) || (policy == Policy.SAMPLE && full.incrementAndGet() % SAMPLE_RATE == 0)) {
+			put(event);
+		} else {
+			dropped.incrementAndGet();
+		}
+	}
+	
+	private boolean isStoryEvent(StoryEvent event) {
+		return event.getType() == StoryEvent.Type.STORY_BEGINS || event.getType() == StoryEvent.Type.STORY_ENDS;
+	}
+	
+	/**
+	 * Waits the space in the queue, starting the
+	 * writer again if it has died in the meantime.
+	 */
+	private void put(Object element) {
+		try {
+			while (!queue.offer(element, WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+				start();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Waits until all the events in the queue are printed.
+	 */
+	@Override
+	public void flush() {
+		if (isStarted()) {
+			Flush flush = new Flush();
+			put(flush);
+			while (!flush.await()) {
+				start();
+			}
+			long drops = dropped.getAndSet(0);
+			if (drops > 0) {
+				logger.warn(drops + " story events have been dropped because the queue was full");
+			}
+		}
+	}
+	
+	/**
+	 * Prints all the events in the queue and stops the writer,
+	 * a new event starts it again.
+	 */
+	@Override
+	public void close() {
+		flush();
+		Thread writer = stop();
+		if (writer != null) {
+			writer.interrupt();
+		}
+	}
+	
+	private synchronized boolean isStarted() {
+		return writer != null;
+	}
+	
+	/**
+	 * Starts the writer, or a new one if the writer has died,
+	 * and the hook flushing the queue when the JVM shuts down,
+	 * removed when the printer is closed.
+	 */
+	private synchronized void start() {
+		if (writer != null && !writer.isAlive()) {
+			logger.error("The story printer has stopped, starting it again");
+			writer = null;
+		}
+		if (writer == null) {
+			writer = new Writer();
+			writer.start();
+		}
+		if (hook == null) {
+			hook = new Thread("story-printer-shutdown") {
+				@Override
+				public void run() {
+					flush();
+				}
+			};
+			Runtime.getRuntime().addShutdownHook(hook);
+		}
+	}
+	
+	private synchronized Thread stop() {
+		Thread writer = this.writer;
+		this.writer = null;
+		if (hook != null) {
+			try {
+				Runtime.getRuntime().removeShutdownHook(hook);
+			} catch (IllegalStateException e) {
+				// The JVM is shutting down
+			}
+			hook = null;
+		}
+		return writer;
+	}
+	
+	/**
+	 * @return true if the hook flushing the
+	 * queue at the shutdown is registered.
+	 */
+	synchronized boolean isHooked() {
+		return hook != null;
+	}
+	
+	/**
+	 * Takes the events in batches and prints them. A failure
+	 * of the printer, even an {@link Error}, is logged and
+	 * skips only its event: if the writer dies anyway, the
+	 * flushes of its batch are released and the next event
+	 * or flush starts a new writer.
+	 */
+	private class Writer extends Thread {
+		
+		Writer() {
+			super("story-printer");
+			setDaemon(true);
+		}
+		
+		@Override
+		public void run() {
+			List<Object> batch = new ArrayList<Object>(BATCH_SIZE);
+			try {
+				while (!isInterrupted()) {
+					batch.add(queue.take());
+					queue.drainTo(batch, BATCH_SIZE - 1);
+					print(batch);
+					batch.clear();
+				}
+			} catch (InterruptedException e) {
+				// Closed
+			} finally {
+				for (Object element : batch) {
+					if (element instanceof Flush) {
+						((Flush) element).done();
+					}
+				}
+			}
+		}
+		
+		private void print(List<Object> batch) {
+			for (Object element : batch) {
+				if (element instanceof StoryEvent) {
+					try {
+						((StoryEvent) element).print(printer);
+					} catch (Throwable e) {
+						logger.error("Impossible to print the story event", e);
+					}
+				} else {
+					flushPrinter();
+					((Flush) element).done();
+				}
+			}
+			flushPrinter();
+		}
+		
+		private void flushPrinter() {
+			if (printer instanceof Flushable) {
+				try {
+					((Flushable) printer).flush();
+				} catch (Throwable e) {
+					logger.error("Impossible to flush the story printer", e);
+				}
+			}
+		}
+		
+	}
+	
+	private static class Flush {
+		
+		private final CountDownLatch latch = new CountDownLatch(1);
+		
+		void done() {
+			latch.countDown();
+		}
+		
+		/**
+		 * @return false if the events are not printed yet
+		 * after a while, true if they are or if the thread
+		 * is interrupted.
+		 */
+		boolean await() {
+			try {
+				return latch.await(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return true;
+			}
+		}
+		
+	}
+	
+	/**
+	 * Creates the {@link AsyncStoryPrinter} with the
+	 * delegate printer created by Guice. The printer is
+	 * injected so it is closed with the injector.
+	 */
+	static class Provider implements com.google.inject.Provider<AbstractStoryModule.StoryPrinter> {
+		
+		@Inject private Injector injector;
+		
+		private final Class<? extends AbstractStoryModule.StoryPrinter> printer;
+		private final Policy policy;
+		private final int capacity;
+		
+		Provider(Class<? extends AbstractStoryModule.StoryPrinter> printer, Policy policy, int capacity) {
+			this.printer = printer;
+			this.policy = policy;
+			this.capacity = capacity;
+		}
+
+		@Override
+		public AbstractStoryModule.StoryPrinter get() {
+			AsyncStoryPrinter asyncPrinter = new AsyncStoryPrinter(injector.getInstance(printer), policy, capacity);
+			injector.injectMembers(asyncPrinter);
+			return asyncPrinter;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,368 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>{@link AbstractStoryModule.StoryPrinter} writing the story
+ * events as binary records in a memory mapped file, without
+ * converting them to messages. The {@link BinaryStoryRenderer}
+ * renders the file, after the run, in the text of the default
+ * printer and converter.</p>
+ * <pre>
+ * public class MyStoryModule extends AbstractStoryModule {
+ *   protected void configureStory() {
+ *     bindBinaryStoryPrinter(new File("target/story.bin"));
+ *   }
+ * }</pre>
+ * <p>The methods and the arguments are written once in dictionary
+ * records and the events refer them by id. The arguments are
+ * formatted when the event happens, because the objects can
+ * change or be unavailable after the run, but the messages
+ * are never built.</p>
+ * <p>The file starts with a magic number and the version followed
+ * by the records, each one starting with its tag:</p>
+ * <ul>
+ * <li>method: id, class name, simple class name, method name, number
+ * of parameters, story flag and story id;</li>
+ * <li>string: id and value;</li>
+ * <li>event: type, outcome, method id, time, thread id, duration and
+ * the ids of the arguments formatted;</li>
+ * <li>text event: type, class and message already converted;</li>
+ * </ul>
+ * <p>A zero tag ends the file. The strings have the length followed
+ * by the UTF-8 bytes.</p>
+ * @author alessandro.simi@gmail.com
+ */
+public class BinaryStoryPrinter implements StoryEventPrinter, Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(BinaryStoryPrinter.class);
+	
+	/**
+	 * The size of the regions of the file mapped in memory.
+	 */
+	public final static int REGION_SIZE = 16 * 1024 * 1024;
+	
+	/**
+	 * The maximum number of arguments remembered to be written only
+	 * once, the following ones are written every time.
+	 */
+	public final static int DICTIONARY_SIZE = 64 * 1024;
+	
+	final static int MAGIC = 0x47425354;
+	final static int VERSION = 1;
+	final static byte END = 0;
+	final static byte METHOD = 1;
+	final static byte STRING = 2;
+	final static byte EVENT = 3;
+	final static byte TEXT_EVENT = 4;
+	final static byte NO_OUTCOME = 0;
+	final static byte SUCCESS = 1;
+	final static byte FAILURE = 2;
+	final static int FORMAT_FAILED = -1;
+	final static Charset UTF_8 = Charset.forName("UTF-8");
+	
+	/**
+	 * Guards the file instead of synchronized so the virtual
+	 * threads waiting the I/O don't pin their carriers.
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+	
+	private final File file;
+	private final int regionSize;
+	
+	private final Map<Method, MethodEntry> methods = new HashMap<Method, MethodEntry>();
+	private final Map<String, Integer> strings = new HashMap<String, Integer>();
+	private int stringIds;
+	private final SimpleDateFormat dateFormat = new SimpleDateFormat(MethodConverter.ReplaceArguments.DATE_FORMAT);
+	
+	private RandomAccessFile randomAccessFile;
+	private MappedByteBuffer region;
+	private long regionStart;
+	private boolean started;
+	
+	/**
+	 * @param file the file of the events.
+	 */
+	public BinaryStoryPrinter(File file) {
+		this(file, REGION_SIZE);
+	}
+	
+	/**
+	 * @param file the file of the events.
+	 * @param regionSize the size in bytes of the regions of
+	 * the file mapped in memory.
+	 */
+	public BinaryStoryPrinter(File file, int regionSize) {
+		this.file = file;
+		this.regionSize = regionSize;
+	}
+	
+	@Override
+	public void onStoryBegins(String className, String story) {
+		onEvent(new StoryEvent(StoryEvent.Type.STORY_BEGINS, className, story));
+	}
+
+	@Override
+	public void onStepBegins(String className, String stepName) {
+		onEvent(new StoryEvent(StoryEvent.Type.STEP_BEGINS, className, stepName));
+	}
+
+	@Override
+	public void onStepEnds(String className, String stepName) {
+		onEvent(new StoryEvent(StoryEvent.Type.STEP_ENDS, className, stepName));
+	}
+
+	@Override
+	public void onStoryEnds(String className, String story) {
+		onEvent(new StoryEvent(StoryEvent.Type.STORY_ENDS, className, story));
+	}
+	
+	@Override
+	public boolean consumes(StoryEvent.Type type) {
+		return true;
+	}
+	
+	@Override
+	public void onEvent(StoryEvent event) {
+		lock.lock();
+		try {
+			if (event.getMethod() == null) {
+				writeTextEvent(event);
+			} else {
+				writeEvent(event);
+			}
+		} catch (IOException e) {
+			logger.error("Impossible to write the story event in " + file, e);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	private void writeEvent(StoryEvent event) throws IOException {
+		MethodEntry method = method(event.getMethod());
+		Object[] arguments = event.getArguments();
+		int[] ids = new int[arguments.length];
+		for (int i = 0; i < arguments.length; i++) {
+			ids[i] = string(format(method, i, arguments[i]));
+		}
+		MappedByteBuffer region = reserve(1 + 1 + 1 + 4 + 8 + 8 + 8 + 4 + 4 * ids.length);
+		region.put(EVENT);
+		region.put((byte) event.getType().ordinal());
+		region.put(outcome(event));
+		region.putInt(method.id);
+		region.putLong(event.getTime());
+		region.putLong(event.getThread().getId());
+		region.putLong(event.getDuration());
+		region.putInt(ids.length);
+		for (int id : ids) {
+			region.putInt(id);
+		}
+	}
+	
+	private void writeTextEvent(StoryEvent event) throws IOException {
+		int className = string(event.getClassName());
+		int message = string(event.getMessage());
+		MappedByteBuffer region = reserve(1 + 1 + 4 + 4 + 8 + 8);
+		region.put(TEXT_EVENT);
+		region.put((byte) event.getType().ordinal());
+		region.putInt(className);
+		region.putInt(message);
+		region.putLong(event.getTime());
+		region.putLong(event.getThread().getId());
+	}
+	
+	private static byte outcome(StoryEvent event) {
+		if (event.getType() == StoryEvent.Type.STEP_ENDS || event.getType() == StoryEvent.Type.STORY_ENDS) {
+			return event.getFailure() == null ? SUCCESS : FAILURE;
+		}
+		return NO_OUTCOME;
+	}
+	
+	/**
+	 * @return the argument formatted as the default converter
+	 * does, null when the formatting fails.
+	 */
+	private String format(MethodEntry method, int index, Object argument) {
+		try {
+			TellTemplate tell = method.metadata.getTellTemplate(index);
+			if (tell != null) {
+				return tell.format(argument, dateFormat);
+			} else {
+				return MethodConverter.ReplaceArguments.format(argument, dateFormat);
+			}
+		} catch (Exception e) {
+			return null;
+		}
+	}
+	
+	private MethodEntry method(Method method) throws IOException {
+		MethodEntry entry = methods.get(method);
+		if (entry == null) {
+			MethodMetadata metadata = MethodMetadata.of(method);
+			entry = new MethodEntry(methods.size(), metadata);
+			Story story = metadata.getStory();
+			byte[] className = bytes(method.getDeclaringClass().getName());
+			byte[] simpleName = bytes(method.getDeclaringClass().getSimpleName());
+			byte[] name = bytes(method.getName());
+			byte[] storyId = bytes(story != null ? story.id() : "");
+			MappedByteBuffer region = reserve(1 + 4 + 4 + className.length + 4 + simpleName.length + 4 + name.length + 4 + 1 + 4 + storyId.length);
+			region.put(METHOD);
+			region.putInt(entry.id);
+			put(region, className);
+			put(region, simpleName);
+			put(region, name);
+			region.putInt(metadata.getParameters());
+			region.put((byte) (story != null ? 1 : 0));
+			put(region, storyId);
+			methods.put(method, entry);
+		}
+		return entry;
+	}
+	
+	/**
+	 * @return the id of the string, written in a dictionary
+	 * record the first time or when the dictionary is full.
+	 */
+	private int string(String value) throws IOException {
+		if (value == null) {
+			return FORMAT_FAILED;
+		}
+		Integer id = strings.get(value);
+		if (id == null) {
+			id = stringIds++;
+			byte[] bytes = bytes(value);
+			MappedByteBuffer region = reserve(1 + 4 + 4 + bytes.length);
+			region.put(STRING);
+			region.putInt(id);
+			put(region, bytes);
+			if (strings.size() < DICTIONARY_SIZE) {
+				strings.put(value, id);
+			}
+		}
+		return id;
+	}
+	
+	private static byte[] bytes(String value) {
+		return value.getBytes(UTF_8);
+	}
+	
+	private static void put(MappedByteBuffer region, byte[] bytes) {
+		region.putInt(bytes.length);
+		region.put(bytes);
+	}
+	
+	/**
+	 * @return the region with the space for the record,
+	 * mapping the next region of the file when it is full.
+	 */
+	private MappedByteBuffer reserve(int size) throws IOException {
+		if (randomAccessFile == null) {
+			open();
+		}
+		if (region == null || region.remaining() < size) {
+			if (region != null) {
+				regionStart += region.position();
+			}
+			region = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, regionStart, Math.max(regionSize, size + 1));
+		}
+		return region;
+	}
+	
+	/**
+	 * Opens the file writing the header the first time,
+	 * appending the records to the file otherwise.
+	 */
+	private void open() throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.exists()) {
+			parent.mkdirs();
+		}
+		randomAccessFile = new RandomAccessFile(file, "rw");
+		if (!started) {
+			started = true;
+			randomAccessFile.setLength(0);
+			randomAccessFile.writeInt(MAGIC);
+			randomAccessFile.writeInt(VERSION);
+			Runtime.getRuntime().addShutdownHook(new Thread("binary-story-printer-shutdown") {
+				@Override
+				public void run() {
+					try {
+						close();
+					} catch (IOException e) {
+						logger.error("Impossible to close " + file, e);
+					}
+				}
+			});
+		}
+		regionStart = randomAccessFile.length();
+		region = null;
+	}
+	
+	/**
+	 * Cuts the file at the end of the records and closes
+	 * it, a new event appends its records to the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		lock.lock();
+		try {
+			if (randomAccessFile != null) {
+				try {
+					long end = regionStart + (region != null ? region.position() : 0);
+					if (region != null) {
+						region.force();
+					}
+					randomAccessFile.getChannel().truncate(end);
+				} finally {
+					randomAccessFile.close();
+					randomAccessFile = null;
+					region = null;
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	private static class MethodEntry {
+		
+		private final int id;
+		private final MethodMetadata metadata;
+		
+		MethodEntry(int id, MethodMetadata metadata) {
+			this.id = id;
+			this.metadata = metadata;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,229 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>Renders the file written by the {@link BinaryStoryPrinter}
+ * in the same text of the {@link AbstractStoryModule.StoryPrinter.Default}
+ * printer with the {@link AbstractStoryModule.StoryConverter.Default}
+ * converter.</p>
+ * <pre>
+ * java -cp guice-behave.jar io.exemplary.guice.BinaryStoryRenderer story.bin [story.txt]</pre>
+ * <p>The events can also be replayed to any printer with
+ * {@link #render(File, AbstractStoryModule.StoryPrinter)}. The
+ * ends of the stories and steps failed are skipped as they
+ * are never notified to the printers.</p>
+ * @author alessandro.simi@gmail.com
+ */
+public final class BinaryStoryRenderer {
+
+	private final Map<Integer, String> strings = new HashMap<Integer, String>();
+	private final Map<Integer, MethodEntry> methods = new HashMap<Integer, MethodEntry>();
+	
+	private BinaryStoryRenderer() {}
+	
+	/**
+	 * Renders the file in the standard output or in the file.
+	 * @param args the binary file and optionally the text file.
+	 * @throws IOException if the files cannot be read or written.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 2) {
+			System.err.println("Usage: BinaryStoryRenderer <binary file> [<text file>]");
+			System.exit(1);
+		}
+		OutputStream output = args.length == 2 ? new FileOutputStream(args[1]) : System.out;
+		PrintWriter writer = new PrintWriter(new OutputStreamWriter(output, BinaryStoryPrinter.UTF_8));
+		try {
+			render(new File(args[0]), new TextPrinter(writer));
+		} finally {
+			writer.flush();
+			if (args.length == 2) {
+				writer.close();
+			}
+		}
+	}
+	
+	/**
+	 * Replays the events of the file to the printer.
+	 * @param file the file written by the {@link BinaryStoryPrinter}.
+	 * @param printer the printer of the events.
+	 * @throws IOException if the file cannot be read.
+	 */
+	public static void render(File file, AbstractStoryModule.StoryPrinter printer) throws IOException {
+		DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (input.readInt() != BinaryStoryPrinter.MAGIC) {
+				throw new IOException(file + " is not a binary story file");
+			}
+			int version = input.readInt();
+			if (version != BinaryStoryPrinter.VERSION) {
+				throw new IOException("The version " + version + " of " + file + " is not supported");
+			}
+			new BinaryStoryRenderer().render(input, printer);
+		} finally {
+			input.close();
+		}
+	}
+	
+	private void render(DataInputStream input, AbstractStoryModule.StoryPrinter printer) throws IOException {
+		while (true) {
+			byte tag;
+			try {
+				tag = input.readByte();
+			} catch (EOFException e) {
+				return;
+			}
+			switch (tag) {
+				case BinaryStoryPrinter.END: return;
+				case BinaryStoryPrinter.METHOD: readMethod(input); break;
+				case BinaryStoryPrinter.STRING: strings.put(input.readInt(), readString(input)); break;
+				case BinaryStoryPrinter.EVENT: readEvent(input, printer); break;
+				case BinaryStoryPrinter.TEXT_EVENT: readTextEvent(input, printer); break;
+				default: throw new IOException("Unknown record " + tag);
+			}
+		}
+	}
+	
+	private void readMethod(DataInputStream input) throws IOException {
+		int id = input.readInt();
+		readString(input);
+		String simpleName = readString(input);
+		String name = readString(input);
+		int parameters = input.readInt();
+		boolean story = input.readByte() == 1;
+		String storyId = readString(input);
+		methods.put(id, new MethodEntry(simpleName, name, parameters, story, storyId));
+	}
+	
+	private void readEvent(DataInputStream input, AbstractStoryModule.StoryPrinter printer) throws IOException {
+		StoryEvent.Type type = StoryEvent.Type.values()[input.readByte()];
+		byte outcome = input.readByte();
+		MethodEntry method = methods.get(input.readInt());
+		input.readLong(); // time
+		input.readLong(); // thread
+		input.readLong(); // duration
+		String[] arguments = new String[input.readInt()];
+		for (int i = 0; i < arguments.length; i++) {
+			int id = input.readInt();
+			arguments[i] = id == BinaryStoryPrinter.FORMAT_FAILED ? null : strings.get(id);
+		}
+		if (outcome != BinaryStoryPrinter.FAILURE) {
+			print(type, method.className, method.render(arguments), printer);
+		}
+	}
+	
+	private void readTextEvent(DataInputStream input, AbstractStoryModule.StoryPrinter printer) throws IOException {
+		StoryEvent.Type type = StoryEvent.Type.values()[input.readByte()];
+		String className = strings.get(input.readInt());
+		String message = strings.get(input.readInt());
+		input.readLong(); // time
+		input.readLong(); // thread
+		print(type, className, message, printer);
+	}
+	
+	private static void print(StoryEvent.Type type, String className, String message, AbstractStoryModule.StoryPrinter printer) {
+		new StoryEvent(type, className, message).print(printer);
+	}
+	
+	private static String readString(DataInputStream input) throws IOException {
+		byte[] bytes = new byte[input.readInt()];
+		input.readFully(bytes);
+		return new String(bytes, BinaryStoryPrinter.UTF_8);
+	}
+	
+	/**
+	 * The method with its template and how the
+	 * default converter decorates the stories.
+	 */
+	private static class MethodEntry {
+		
+		private final String className;
+		private final MethodTemplate template;
+		private final boolean story;
+		private final String storyId;
+		
+		MethodEntry(String className, String name, int parameters, boolean story, String storyId) {
+			this.className = className;
+			this.template = MethodTemplate.compile(MethodTemplate.separate(name), parameters);
+			this.story = story;
+			this.storyId = storyId;
+		}
+		
+		String render(String[] arguments) {
+			String message;
+			try {
+				message = template.render(arguments);
+			} catch (IllegalArgumentException e) {
+				message = template.message();
+			}
+			if (story) {
+				message = "Story \"" + message + "\"";
+				if (!storyId.isEmpty()) {
+					message += " [" + storyId + "]";
+				}
+			}
+			return message;
+		}
+		
+	}
+	
+	/**
+	 * Writes the lines the default printer logs.
+	 */
+	private static class TextPrinter implements AbstractStoryModule.StoryPrinter {
+		
+		private final PrintWriter writer;
+		
+		TextPrinter(PrintWriter writer) {
+			this.writer = writer;
+		}
+
+		@Override
+		public void onStoryBegins(String className, String story) {
+			writer.println();
+			writer.println("  " + story);
+			writer.println("  by " + className);
+			writer.println();
+		}
+
+		@Override
+		public void onStepBegins(String className, String stepName) {
+			writer.println(stepName);
+		}
+
+		@Override
+		public void onStepEnds(String className, String stepName) {}
+
+		@Override
+		public void onStoryEnds(String className, String story) {}
+		
+	}
+	
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>The time budget of a {@link Story} or of a step: the story
+ * or the step running longer fails with a {@link BudgetExceededError}
+ * even when it succeeded. The failure of a story names its slowest
+ * step.</p>
+ * <pre>
+ * &#64;Story &#64;Budget(value = 2, unit = TimeUnit.SECONDS, hardLimit = 60)
+ * public void theUserBuysABook() { ... }</pre>
+ * @author alessandro.simi@gmail.com
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD})
+public @interface Budget {
+
+	/**
+	 * @return the time budget in the unit.
+	 */
+	long value();
+	
+	TimeUnit unit() default TimeUnit.MILLISECONDS;
+	
+	/**
+	 * @return the time in the unit after which the thread
+	 * running the story or the step is interrupted, zero
+	 * to never interrupt it.
+	 */
+	long hardLimit() default 0;
+	
+	/**
+	 * @return true to capture the stack trace of the thread
+	 * when the budget is exceeded, attached as the cause of
+	 * the failure.
+	 */
+	boolean threadDump() default false;
+	
+}
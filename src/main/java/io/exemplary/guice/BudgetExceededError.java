@@ -0,0 +1,34 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+/**
+ * <p>Fails a story or a step running longer than its {@link Budget}
+ * and a {@link MicroBenchmark} over its threshold.</p>
+ * @author alessandro.simi@gmail.com
+ */
+public class BudgetExceededError extends AssertionError {
+
+	private static final long serialVersionUID = 1L;
+
+	BudgetExceededError(String message, Throwable cause) {
+		super(message);
+		if (cause != null) {
+			initCause(cause);
+		}
+	}
+	
+}
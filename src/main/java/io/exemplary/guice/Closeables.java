@@ -0,0 +1,160 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import static com.google.inject.matcher.Matchers.any;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Binding;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Provider;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Names;
+import com.google.inject.spi.InjectionListener;
+import com.google.inject.spi.InstanceBinding;
+import com.google.inject.spi.TypeEncounter;
+import com.google.inject.spi.TypeListener;
+
+/**
+ * <p>{@link com.google.inject.Guice} module added to every
+ * injector created by the runners to keep track of the
+ * {@link Closeable} instances created by the injector.</p>
+ * <p>The instances are closed when the injector is removed
+ * from the cache so the resources opened by the test modules
+ * (e.g. connection pools, embedded servers) don't outlive
+ * it. The instances are weakly referenced and the ones already
+ * collected are not closed.</p>
+ * <p>A child injector inherits the listener of its parent,
+ * so every module tracks only the instances created by its
+ * own injector or by a child injector without the module.</p>
+ * @author alessandro.simi@gmail.com
+ */
+final class Closeables extends AbstractModule implements TypeListener {
+
+	private static final Logger logger = LoggerFactory.getLogger(Closeables.class);
+	
+	private final static AtomicInteger counter = new AtomicInteger();
+	
+	private final Set<Closeable> instances = Collections.newSetFromMap(new WeakHashMap<Closeable, Boolean>());
+	private final Map<Injector, Boolean> owned = new WeakHashMap<Injector, Boolean>();
+	
+	@Inject private Injector injector;
+	
+	/**
+	 * Binds the instance with a unique name so
+	 * a child injector can have its own.
+	 */
+	@Override
+	protected void configure() {
+		bind(Closeables.class).annotatedWith(Names.named(Closeables.class.getName() + counter.incrementAndGet())).toInstance(this);
+		bindListener(any(), this);
+	}
+	
+	@Override
+	public <I> void hear(TypeLiteral<I> type, TypeEncounter<I> encounter) {
+		if (Closeable.class.isAssignableFrom(type.getRawType())) {
+			final Provider<Injector> creator = encounter.getProvider(Injector.class);
+			encounter.register(new InjectionListener<I>() {
+				@Override
+				public void afterInjection(I injectee) {
+					synchronized (instances) {
+						if (owns(creator.get())) {
+							instances.add((Closeable) injectee);
+						}
+					}
+				}
+			});
+		}
+	}
+	
+	/**
+	 * @return true if the injector creating an instance
+	 * is the injector of the module or a child injector
+	 * without its own module.
+	 */
+	private boolean owns(Injector creator) {
+		Boolean owns = owned.get(creator);
+		if (owns == null) {
+			Injector owner = creator;
+			while (owner != null && of(owner) == null) {
+				owner = owner.getParent();
+			}
+			owns = owner == injector;
+			owned.put(creator, owns);
+		}
+		return owns;
+	}
+	
+	/**
+	 * Closes the instances created so far. The
+	 * order of closing is not guaranteed.
+	 */
+	void close() {
+		List<Closeable> closeables;
+		synchronized (instances) {
+			closeables = new ArrayList<Closeable>(instances);
+			instances.clear();
+		}
+		for (Closeable closeable : closeables) {
+			try {
+				closeable.close();
+			} catch (IOException e) {
+				logger.warn("Impossible to close " + closeable.getClass().getName(), e);
+			} catch (RuntimeException e) {
+				logger.warn("Impossible to close " + closeable.getClass().getName(), e);
+			}
+		}
+	}
+	
+	/**
+	 * Closes the instances created by the injector, but
+	 * not by its parent, when it was created with this module.
+	 */
+	static void close(Injector injector) {
+		Closeables closeables = of(injector);
+		if (closeables != null) {
+			closeables.close();
+		}
+	}
+	
+	/**
+	 * @return the module the injector was created
+	 * with, null if it was created without.
+	 */
+	private static Closeables of(Injector injector) {
+		for (Binding<?> binding : injector.getBindings().values()) {
+			if (binding instanceof InstanceBinding && binding.getKey().getTypeLiteral().getRawType().equals(Closeables.class)) {
+				return (Closeables) ((InstanceBinding<?>) binding).getInstance();
+			}
+		}
+		return null;
+	}
+	
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerBuilder;
+
+/**
+ * <p>A {@link GuiceSuite} running the classes grouped by their
+ * {@link Modules}: the classes sharing an injector run one after
+ * another, the groups sharing a parent injector as well, and every
+ * injector is closed as soon as its last class has run.</p>
+ * <pre>
+ * {@literal @}RunWith(GroupedGuiceSuite.class)
+ * {@literal @}SuiteClasses({ MyFirstTest.class, MySecondTest.class })
+ * public class MySuite {}</pre>
+ * <p>Every injector is built once and only the injector of the
+ * running group is kept in memory: the injector of the next group
+ * is built in background once the previous group is closed. The groups are ordered by the
+ * first of their classes and the classes of a group keep their
+ * order, the classes not running with Guice run last.</p>
+ * @author alessandro.simi@gmail.com
+ */
+public class GroupedGuiceSuite extends GuiceSuite {
+
+	/**
+	 * Called reflectively by JUnit.
+	 * @param classToRun the suite class
+	 * @param builder the builder of the runners not using Guice
+	 * @throws InitializationError if the suite is malformed
+	 */
+	public GroupedGuiceSuite(Class<?> classToRun, RunnerBuilder builder) throws InitializationError {
+		super(classToRun, builder, true);
+	}
+	
+}
@@ -0,0 +1,361 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.junit.runner.Description;
+import org.junit.runner.RunWith;
+import org.junit.runner.Runner;
+import org.junit.runner.manipulation.Sorter;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.Suite;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerBuilder;
+
+import com.google.inject.Injector;
+
+/**
+ * <p>A JUnit suite of test classes running with the {@link TestRunner}
+ * or the {@link StoryRunner}. Instead of creating all the injectors
+ * while the suite is assembled, the injectors of the next classes
+ * are built in background while the previous class runs.</p>
+ * <pre>
+ * {@literal @}RunWith(GuiceSuite.class)
+ * {@literal @}SuiteClasses({ MyFirstTest.class, MySecondTest.class })
+ * public class MySuite {}</pre>
+ * <p>A class reaching its turn before its injector is ready waits
+ * the build in progress, or builds it itself if it is not started
+ * yet. The number of background threads, one by default, can be
+ * changed with the {@code guice.behave.suite.threads} system
+ * property and the number of next classes, two by default, with
+ * the {@code guice.behave.suite.lookahead} system property. A built
+ * injector is kept until its class has run, and the injector
+ * of a running class until the next class with the same modules
+ * runs, so neither the cache limited by {@code guice.behave.injectors.size}
+ * nor {@code guice.behave.injectors.release} close it in between.</p>
+ * @author alessandro.simi@gmail.com
+ */
+public class GuiceSuite extends Suite {
+
+	/**
+	 * System property with the number of threads
+	 * building the injectors in background.
+	 */
+	final static String THREADS = "guice.behave.suite.threads";
+	
+	/**
+	 * Called reflectively by JUnit.
+	 * @param classToRun the suite class
+	 * @param builder the builder of the runners not using Guice
+	 * @throws InitializationError if the suite is malformed
+	 */
+	public GuiceSuite(Class<?> classToRun, RunnerBuilder builder) throws InitializationError {
+		this(classToRun, builder, false);
+	}
+	
+	/**
+	 * System property with the number of classes, following
+	 * the running one, whose injectors are built in background.
+	 */
+	final static String LOOKAHEAD = "guice.behave.suite.lookahead";
+	
+	private final boolean grouped;
+	private Map<Runner, Release> releases = Collections.emptyMap();
+	private List<TestRunner> runners = Collections.emptyList();
+	private Map<Runner, Integer> positions = Collections.emptyMap();
+	private final Map<Integer, Future<Injector>> prebuilds = new HashMap<Integer, Future<Injector>>();
+	private int prebuilt;
+	private int lookahead;
+	private ExecutorService executor;
+	
+	/**
+	 * @param grouped true to run the classes grouped by their
+	 * injectors and release each injector after its group.
+	 */
+	GuiceSuite(Class<?> classToRun, RunnerBuilder builder, boolean grouped) throws InitializationError {
+		super(classToRun, new DeferredBuilder(builder));
+		this.grouped = grouped;
+		if (grouped) {
+			sort(new Sorter(new GroupComparator(getChildren())));
+		}
+	}
+	
+	/**
+	 * Builds the injectors in background while the children run.
+	 */
+	@Override
+	public void run(RunNotifier notifier) {
+		executor = Executors.newFixedThreadPool(Math.max(1, Integer.getInteger(THREADS, 1)), new NamedThreadFactory(getName()));
+		lookahead = Math.max(0, Integer.getInteger(LOOKAHEAD, 2));
+		runners = getDeferredRunners();
+		prebuilt = 0;
+		positions = new HashMap<Runner, Integer>();
+		for (int i = 0; i < runners.size(); i++) {
+			positions.put(runners.get(i), i);
+		}
+		if (grouped) {
+			releases = getReleases(runners);
+		}
+		try {
+			super.run(notifier);
+		} finally {
+			for (int i = 0; i < runners.size(); i++) {
+				releasePrebuilt(i);
+			}
+			executor.shutdown();
+		}
+	}
+	
+	/**
+	 * Builds the injectors of the next classes in background
+	 * before the class runs. The grouped suite releases the
+	 * injectors of the group after its last class and only
+	 * then builds the injector of the next group, so a single
+	 * group is in memory.
+	 */
+	@Override
+	protected void runChild(Runner runner, RunNotifier notifier) {
+		Integer index = positions.get(runner);
+		if (index != null && !grouped) {
+			prebuild(index + 1, index + lookahead);
+		}
+		if (index != null) {
+			carry(index);
+		}
+		try {
+			super.runChild(runner, notifier);
+		} finally {
+			if (index != null) {
+				releasePrebuilt(index);
+			}
+			Release release = releases.get(runner);
+			if (release != null) {
+				release.run();
+				if (release.key != null && lookahead > 0) {
+					prebuild(index + 1, index + 1);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Submits the builds of the injectors of the runners
+	 * in the range not submitted yet.
+	 */
+	private synchronized void prebuild(int first, int last) {
+		for (prebuilt = Math.max(prebuilt, first); prebuilt <= last && prebuilt < runners.size(); prebuilt++) {
+			if (!prebuilds.containsKey(prebuilt)) {
+				prebuilds.put(prebuilt, executor.submit(prebuild(runners.get(prebuilt))));
+			}
+		}
+	}
+	
+	/**
+	 * Acquires the injector of the runner for the next runner
+	 * with the same key before the runner runs, so the injector
+	 * released by the runner is not closed and built again
+	 * for the next one.
+	 */
+	private void carry(int index) {
+		String key = runners.get(index).getInjectorKey();
+		for (int next = index + 1; next < runners.size(); next++) {
+			if (runners.get(next).getInjectorKey().equals(key)) {
+				FutureTask<Injector> build = new FutureTask<Injector>(prebuild(runners.get(next)));
+				synchronized (this) {
+					if (prebuilds.containsKey(next)) {
+						return;
+					}
+					prebuilds.put(next, build);
+				}
+				build.run();
+				return;
+			}
+		}
+	}
+	
+	private static Callable<Injector> prebuild(final TestRunner runner) {
+		return new Callable<Injector>() {
+			@Override
+			public Injector call() throws InitializationError {
+				return runner.prebuild();
+			}
+		};
+	}
+	
+	/**
+	 * Releases the injector acquired by the build of the runner,
+	 * cancelling the build if it isn't started yet.
+	 */
+	private void releasePrebuilt(int index) {
+		Future<Injector> build;
+		synchronized (this) {
+			build = prebuilds.remove(index);
+		}
+		if (build == null || build.cancel(false)) {
+			return;
+		}
+		try {
+			Injector injector = build.get();
+			if (injector != null) {
+				runners.get(index).releasePrebuilt(injector);
+			}
+		} catch (ExecutionException e) {
+			// The runner has already reported the failure
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * @return the injectors and the parent injectors
+	 * to release after the runners ending a group.
+	 */
+	private static Map<Runner, Release> getReleases(List<TestRunner> runners) {
+		Map<Runner, Release> releases = new HashMap<Runner, Release>();
+		for (int i = 0; i < runners.size(); i++) {
+			String key = runners.get(i).getInjectorKey();
+			String next = i + 1 < runners.size() ? runners.get(i + 1).getInjectorKey() : null;
+			String parentKey = ShardFilter.rootKey(key);
+			Release release = new Release();
+			if (!key.equals(next)) {
+				release.key = key;
+			}
+			if (!parentKey.equals(key) && (next == null || !parentKey.equals(ShardFilter.rootKey(next)))) {
+				release.parentKey = parentKey;
+			}
+			if (release.key != null || release.parentKey != null) {
+				releases.put(runners.get(i), release);
+			}
+		}
+		return releases;
+	}
+	
+	private static class Release {
+		
+		private String key;
+		private String parentKey;
+		
+		void run() {
+			if (key != null) {
+				TestRunner.removeInjector(key);
+			}
+			if (parentKey != null) {
+				TestRunner.removeParentInjector(parentKey);
+			}
+		}
+		
+	}
+	
+	/**
+	 * Orders the classes by the first appearance of their parent
+	 * key and then of their key, the other classes last, keeping
+	 * the order of the classes in the same group.
+	 */
+	private static class GroupComparator implements Comparator<Description> {
+		
+		private final Map<Description, String> keys = new HashMap<Description, String>();
+		private final Map<String, Integer> order = new HashMap<String, Integer>();
+		
+		GroupComparator(List<Runner> children) {
+			for (Runner child : children) {
+				if (child instanceof TestRunner) {
+					String key = ((TestRunner) child).getInjectorKey();
+					keys.put(child.getDescription(), key);
+					rank(ShardFilter.rootKey(key));
+					rank(key);
+				}
+			}
+		}
+		
+		private void rank(String key) {
+			if (!order.containsKey(key)) {
+				order.put(key, order.size());
+			}
+		}
+		
+		@Override
+		public int compare(Description o1, Description o2) {
+			String key1 = keys.get(o1);
+			String key2 = keys.get(o2);
+			if (key1 == null || key2 == null) {
+				return key1 == null ? (key2 == null ? 0 : 1) : -1;
+			}
+			int compare = order.get(ShardFilter.rootKey(key1)).compareTo(order.get(ShardFilter.rootKey(key2)));
+			return compare != 0 ? compare : order.get(key1).compareTo(order.get(key2));
+		}
+		
+	}
+	
+	/**
+	 * @return the runners of the children still to run, in the
+	 * order they run and without the ones filtered out.
+	 */
+	private List<TestRunner> getDeferredRunners() {
+		Map<Description, TestRunner> runners = new HashMap<Description, TestRunner>();
+		for (Runner runner : getChildren()) {
+			if (runner instanceof TestRunner) {
+				runners.put(runner.getDescription(), (TestRunner) runner);
+			}
+		}
+		List<TestRunner> deferred = new ArrayList<TestRunner>();
+		for (Description description : getDescription().getChildren()) {
+			TestRunner runner = runners.get(description);
+			if (runner != null) {
+				deferred.add(runner);
+			}
+		}
+		return deferred;
+	}
+	
+	/**
+	 * Creates the {@link TestRunner} and {@link StoryRunner}
+	 * children without their injectors.
+	 */
+	private static class DeferredBuilder extends RunnerBuilder {
+		
+		private final RunnerBuilder builder;
+		
+		DeferredBuilder(RunnerBuilder builder) {
+			this.builder = builder;
+		}
+		
+		@Override
+		public Runner runnerForClass(Class<?> testClass) throws Throwable {
+			RunWith runWith = testClass.getAnnotation(RunWith.class);
+			if (runWith != null && runWith.value().equals(TestRunner.class)) {
+				return new TestRunner(testClass, true);
+			} else if (runWith != null && runWith.value().equals(StoryRunner.class)) {
+				return new StoryRunner(testClass, true);
+			} else {
+				return builder.runnerForClass(testClass);
+			}
+		}
+		
+	}
+	
+}
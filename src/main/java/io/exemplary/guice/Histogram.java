@@ -0,0 +1,167 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>Lock-free histogram of durations in nanoseconds.</p>
+ * <p>The values lower than 32 have their own bucket, the
+ * others fall in 32 buckets for every power of two, so the
+ * percentiles have an error lower than 3% and the histogram
+ * has a constant size whatever the number of values.</p>
+ * <p>The values are recorded concurrently without locks, the
+ * statistics read while the values are recorded can be
+ * slightly out of sync.</p>
+ * @author alessandro.simi@gmail.com
+ */
+public final class Histogram {
+
+	private final static int SUB_BUCKET_BITS = 5;
+	private final static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private final static int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+	
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+	private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+	
+	Histogram() {}
+	
+	/**
+	 * Records a duration, the negative ones count as zero.
+	 */
+	void record(long nanos) {
+		long value = Math.max(0, nanos);
+		buckets.incrementAndGet(index(value));
+		count.incrementAndGet();
+		total.addAndGet(value);
+		long current = min.get();
+		while (value < current && !min.compareAndSet(current, value)) {
+			current = min.get();
+		}
+		current = max.get();
+		while (value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+	
+	static int index(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+	
+	/**
+	 * @return the lowest value of the bucket.
+	 */
+	static long lowest(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+	}
+	
+	/**
+	 * @return the highest value of the bucket.
+	 */
+	static long highest(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		return lowest(index) + (1L << shift) - 1;
+	}
+	
+	/**
+	 * @return the number of durations recorded.
+	 */
+	public long getCount() {
+		return count.get();
+	}
+	
+	/**
+	 * @return the minimum duration in nanoseconds, zero when empty.
+	 */
+	public long getMin() {
+		return getCount() == 0 ? 0 : min.get();
+	}
+	
+	/**
+	 * @return the maximum duration in nanoseconds, zero when empty.
+	 */
+	public long getMax() {
+		return getCount() == 0 ? 0 : max.get();
+	}
+	
+	/**
+	 * @return the mean duration in nanoseconds, zero when empty.
+	 */
+	public long getMean() {
+		long count = getCount();
+		return count == 0 ? 0 : total.get() / count;
+	}
+	
+	/**
+	 * @param percentile the percentile between 0 and 100 (e.g. 99.9).
+	 * @return the highest duration in nanoseconds of the bucket
+	 * with the percentile, within the minimum and the maximum.
+	 */
+	public long getPercentile(double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("The percentile " + percentile + " is not between 0 and 100.");
+		}
+		long[] snapshot = new long[BUCKETS];
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = buckets.get(i);
+			count += snapshot[i];
+		}
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long cumulative = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			cumulative += snapshot[i];
+			if (cumulative >= rank) {
+				return Math.max(getMin(), Math.min(getMax(), highest(i)));
+			}
+		}
+		return getMax();
+	}
+	
+	/**
+	 * @return the statistics in microseconds.
+	 */
+	@Override
+	public String toString() {
+		return "count=" + getCount() + " min=" + micros(getMin()) + " p50=" + micros(getPercentile(50)) + " p90=" + micros(getPercentile(90))
+			+ " p99=" + micros(getPercentile(99)) + " p999=" + micros(getPercentile(99.9)) + " max=" + micros(getMax()) + " (us)";
+	}
+	
+	private static long micros(long nanos) {
+		return TimeUnit.NANOSECONDS.toMicros(nanos);
+	}
+	
+}
@@ -0,0 +1,357 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>{@link AbstractStoryModule.StoryPrinter} writing every story
+ * event as a line of JSON, easy to parse by other tools.</p>
+ * <pre>
+ * {"type":"STEP_ENDS","class":"MyStoryTest","message":"The first step takes \"one\" arguments",
+ *  "method":"the_first_step_takes_$1_arguments","arguments":["one"],"thread":"main",
+ *  "time":1500000000000,"duration":1200,"outcome":"success"}</pre>
+ * <p>The ends of the stories and steps failed have the outcome
+ * {@code failure} and the {@code error} with the exception.</p>
+ * <p>The events are encoded in a fixed buffer written to a file
+ * channel when it is full, so the memory used doesn't depend on
+ * the size of the suite. The file can be compressed with gzip and
+ * rolled when it exceeds a maximum size: the following files have
+ * the number of the roll before the extension (e.g. {@code story.1.jsonl}).</p>
+ * <pre>
+ * public class MyStoryModule extends AbstractStoryModule {
+ *   protected void configureStory() {
+ *     bindJsonStoryPrinter(new File("target/story.jsonl"));
+ *   }
+ * }</pre>
+ * @author alessandro.simi@gmail.com
+ */
+public class JsonStoryPrinter implements StoryEventPrinter, Flushable, Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(JsonStoryPrinter.class);
+	
+	/**
+	 * The size of the buffer of the encoded events.
+	 */
+	public final static int BUFFER_SIZE = 64 * 1024;
+	
+	private final static Charset UTF_8 = Charset.forName("UTF-8");
+	
+	/**
+	 * Guards the file instead of synchronized so the virtual
+	 * threads waiting the I/O don't pin their carriers.
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+	
+	private final File file;
+	private final boolean gzip;
+	private final long maxSize;
+	
+	private final StringBuilder line = new StringBuilder(256);
+	private final CharsetEncoder encoder = UTF_8.newEncoder();
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	
+	private FileChannel channel;
+	private GZIPOutputStream output;
+	private int rolls;
+	private int truncated = -1;
+	private boolean hooked;
+	
+	/**
+	 * Creates a printer writing a single file without compression.
+	 * @param file the file of the events.
+	 */
+	public JsonStoryPrinter(File file) {
+		this(file, false, 0);
+	}
+	
+	/**
+	 * @param file the file of the events.
+	 * @param gzip true to compress the file with gzip.
+	 * @param maxSize the size in bytes of the file rolling it,
+	 * zero to never roll it.
+	 */
+	public JsonStoryPrinter(File file, boolean gzip, long maxSize) {
+		this.file = file;
+		this.gzip = gzip;
+		this.maxSize = maxSize;
+	}
+	
+	@Override
+	public void onStoryBegins(String className, String story) {
+		onEvent(new StoryEvent(StoryEvent.Type.STORY_BEGINS, className, story));
+	}
+
+	@Override
+	public void onStepBegins(String className, String stepName) {
+		onEvent(new StoryEvent(StoryEvent.Type.STEP_BEGINS, className, stepName));
+	}
+
+	@Override
+	public void onStepEnds(String className, String stepName) {
+		onEvent(new StoryEvent(StoryEvent.Type.STEP_ENDS, className, stepName));
+	}
+
+	@Override
+	public void onStoryEnds(String className, String story) {
+		onEvent(new StoryEvent(StoryEvent.Type.STORY_ENDS, className, story));
+	}
+	
+	@Override
+	public boolean consumes(StoryEvent.Type type) {
+		return true;
+	}
+	
+	@Override
+	public void onEvent(StoryEvent event) {
+		lock.lock();
+		try {
+			line.setLength(0);
+			toJson(event);
+			line.append('\n');
+			write(line);
+		} catch (IOException e) {
+			logger.error("Impossible to write the story event in " + file, e);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	private void toJson(StoryEvent event) {
+		line.append("{\"type\":\"").append(event.getType()).append('"');
+		line.append(",\"class\":");
+		string(event.getClassName());
+		line.append(",\"message\":");
+		string(event.getMessage());
+		if (event.getMethod() != null) {
+			line.append(",\"method\":");
+			string(event.getMethod().getName());
+		}
+		if (event.getArguments() != null) {
+			line.append(",\"arguments\":[");
+			Object[] arguments = event.getArguments();
+			for (int i = 0; i < arguments.length; i++) {
+				if (i > 0) {
+					line.append(',');
+				}
+				string(toString(arguments[i]));
+			}
+			line.append(']');
+		}
+		line.append(",\"thread\":");
+		string(event.getThread().getName());
+		line.append(",\"time\":").append(event.getTime());
+		if (event.getDuration() >= 0) {
+			line.append(",\"duration\":").append(event.getDuration());
+		}
+		if (event.getType() == StoryEvent.Type.STEP_ENDS || event.getType() == StoryEvent.Type.STORY_ENDS) {
+			if (event.getFailure() == null) {
+				line.append(",\"outcome\":\"success\"");
+			} else {
+				line.append(",\"outcome\":\"failure\",\"error\":");
+				string(event.getFailure().toString());
+			}
+		}
+		line.append('}');
+	}
+	
+	private static String toString(Object argument) {
+		try {
+			if (argument instanceof Object[]) {
+				return Arrays.deepToString((Object[]) argument);
+			} else if (argument != null && argument.getClass().isArray()) {
+				String array = Arrays.deepToString(new Object[] { argument });
+				return array.substring(1, array.length() - 1);
+			} else {
+				return String.valueOf(argument);
+			}
+		} catch (RuntimeException e) {
+			return argument.getClass().getName();
+		}
+	}
+	
+	private void string(String value) {
+		if (value == null) {
+			line.append("null");
+			return;
+		}
+		line.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '"': line.append("\\\""); break;
+				case '\\': line.append("\\\\"); break;
+				case '\n': line.append("\\n"); break;
+				case '\r': line.append("\\r"); break;
+				case '\t': line.append("\\t"); break;
+				default:
+					if (c < ' ') {
+						line.append(String.format("\\u%04x", (int) c));
+					} else {
+						line.append(c);
+					}
+			}
+		}
+		line.append('"');
+	}
+	
+	/**
+	 * Encodes the line in the buffer writing
+	 * the buffer every time it is full.
+	 */
+	private void write(CharSequence line) throws IOException {
+		open();
+		CharBuffer chars = CharBuffer.wrap(line);
+		encoder.reset();
+		while (true) {
+			CoderResult result = encoder.encode(chars, buffer, true);
+			if (result.isOverflow()) {
+				drain();
+			} else {
+				break;
+			}
+		}
+		if (encoder.flush(buffer).isOverflow()) {
+			drain();
+			encoder.flush(buffer);
+		}
+		if (maxSize > 0 && size() >= maxSize) {
+			close();
+			rolls++;
+		}
+	}
+	
+	/**
+	 * @return the size of the file, approximated
+	 * when the file is compressed.
+	 */
+	private long size() throws IOException {
+		return channel.position() + buffer.position();
+	}
+	
+	private void open() throws IOException {
+		if (channel != null) {
+			return;
+		}
+		File current = rolls == 0 ? file : rolled(file, rolls);
+		File parent = current.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.exists()) {
+			parent.mkdirs();
+		}
+		// Truncates the file the first time, appends to it when reopened
+		channel = new FileOutputStream(current, rolls <= truncated).getChannel();
+		truncated = Math.max(truncated, rolls);
+		if (gzip) {
+			output = new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+		}
+		if (!hooked) {
+			hooked = true;
+			Runtime.getRuntime().addShutdownHook(new Thread("json-story-printer-shutdown") {
+				@Override
+				public void run() {
+					try {
+						close();
+					} catch (IOException e) {
+						logger.error("Impossible to close " + file, e);
+					}
+				}
+			});
+		}
+	}
+	
+	/**
+	 * @return the file with the number of the roll before the extension.
+	 */
+	static File rolled(File file, int roll) {
+		String name = file.getName();
+		int dot = name.indexOf('.');
+		String rolled = dot > 0 ? name.substring(0, dot) + "." + roll + name.substring(dot) : name + "." + roll;
+		return new File(file.getParentFile(), rolled);
+	}
+	
+	private void drain() throws IOException {
+		buffer.flip();
+		if (gzip) {
+			output.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+		} else {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+		buffer.clear();
+	}
+	
+	/**
+	 * Writes the events still in the buffer.
+	 */
+	@Override
+	public void flush() throws IOException {
+		lock.lock();
+		try {
+			if (channel != null) {
+				drain();
+				if (gzip) {
+					output.flush();
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Writes the events still in the buffer and closes the
+	 * file, a new event reopens the file appending to it.
+	 */
+	@Override
+	public void close() throws IOException {
+		lock.lock();
+		try {
+			if (channel != null) {
+				try {
+					drain();
+					if (gzip) {
+						output.close();
+					}
+				} finally {
+					channel.close();
+					channel = null;
+					output = null;
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+}
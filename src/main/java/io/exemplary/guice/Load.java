@@ -0,0 +1,61 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Runs a {@link Story} as a closed model load test: for
+ * every level of concurrency the story runs in a loop from
+ * as many threads, each one with its own instance of the
+ * test class, for the iterations or for the duration.</p>
+ * <pre>
+ * &#64;Story &#64;Load(threads = {1, 2, 4, 8, 16}, duration = 10)
+ * public void theUserBuysABook() { ... }</pre>
+ * <p>The story runs once, printed, before the load. The throughput
+ * and the latencies of every level are logged under the
+ * {@code story.benchmarks} logger, showing where the
+ * contention starts.</p>
+ * @author alessandro.simi@gmail.com
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD})
+public @interface Load {
+
+	/**
+	 * @return the levels of concurrency.
+	 */
+	int[] threads() default {1, 2, 4, 8};
+	
+	/**
+	 * @return the iterations of every thread,
+	 * ignored when the duration is set.
+	 */
+	int iterations() default 100;
+	
+	/**
+	 * @return the duration of every level in
+	 * the unit, zero to run the iterations.
+	 */
+	long duration() default 0;
+	
+	TimeUnit unit() default TimeUnit.SECONDS;
+	
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.Statement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Runs the story of a {@link Load} level by level, each
+ * thread with its own test instance, and logs the throughput
+ * and the latencies of every level.</p>
+ * @author alessandro.simi@gmail.com
+ */
+class LoadStatement extends Statement {
+
+	static final Logger logger = LoggerFactory.getLogger("story.benchmarks");
+	
+	/**
+	 * Creates the instances of the test class.
+	 */
+	static interface Tests {
+		Object create() throws Exception;
+	}
+	
+	private final FrameworkMethod method;
+	private final Object test;
+	private final Tests tests;
+	private final StoryInterceptor interceptor;
+	private final Load load;
+	private final String name;
+	private final boolean virtual;
+	
+	LoadStatement(FrameworkMethod method, Object test, Tests tests, StoryInterceptor interceptor, Load load, String name, boolean virtual) {
+		this.method = method;
+		this.test = test;
+		this.tests = tests;
+		this.interceptor = interceptor;
+		this.load = load;
+		this.name = name;
+		this.virtual = virtual;
+	}
+	
+	@Override
+	public void evaluate() throws Throwable {
+		method.invokeExplosively(test);
+		ExecutorService executor = Executors.newCachedThreadPool(NamedThreadFactory.create(name + "-load", virtual));
+		try {
+			for (int threads : load.threads()) {
+				run(executor, threads);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	private void run(ExecutorService executor, int threads) throws Throwable {
+		final Histogram histogram = new Histogram();
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		final long duration = load.unit().toNanos(load.duration());
+		for (int i = 0; i < threads; i++) {
+			final Object test = i == 0 ? this.test : tests.create();
+			futures.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					start.await();
+					loop(test, histogram, duration);
+					return null;
+				}
+			}));
+		}
+		long begin = System.nanoTime();
+		start.countDown();
+		for (Future<Void> future : futures) {
+			await(future);
+		}
+		long elapsed = System.nanoTime() - begin;
+		logger.info(name + " threads=" + threads + " throughput=" + throughput(histogram.getCount(), elapsed) + " ops/s " + histogram);
+	}
+	
+	/**
+	 * Runs the story muted until the deadline or
+	 * for the iterations.
+	 */
+	private void loop(Object test, Histogram histogram, long duration) throws Exception {
+		mute(interceptor, true);
+		try {
+			long deadline = System.nanoTime() + duration;
+			for (int i = 0; duration > 0 ? System.nanoTime() - deadline < 0 : i < load.iterations(); i++) {
+				long start = System.nanoTime();
+				invoke(method, test);
+				histogram.record(System.nanoTime() - start);
+			}
+		} finally {
+			mute(interceptor, false);
+		}
+	}
+	
+	static void invoke(FrameworkMethod method, Object test) throws Exception {
+		try {
+			method.invokeExplosively(test);
+		} catch (Exception e) {
+			throw e;
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable throwable) {
+			throw new Exception(throwable);
+		}
+	}
+	
+	static void mute(StoryInterceptor interceptor, boolean mute) {
+		if (interceptor != null) {
+			interceptor.mute(mute);
+		}
+	}
+	
+	/**
+	 * Waits the future rethrowing the failure of the story.
+	 */
+	static void await(Future<?> future) throws Throwable {
+		try {
+			future.get();
+		} catch (ExecutionException e) {
+			throw e.getCause();
+		}
+	}
+	
+	static long throughput(long count, long elapsed) {
+		return elapsed > 0 ? count * TimeUnit.SECONDS.toNanos(1) / elapsed : 0;
+	}
+	
+}
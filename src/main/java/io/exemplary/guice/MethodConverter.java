@@ -15,9 +15,7 @@
  */
 package io.exemplary.guice;
 
-import java.lang.annotation.Annotation;
 import java.lang.reflect.Array;
-import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -65,6 +63,39 @@ public interface MethodConverter {
 		
 	}
 	
+	/**
+	 * <p>Converts the message with the same result of the
+	 * {@link Global} converter reading the message only once
+	 * char by char, without regular expressions and without
+	 * intermediate messages.</p>
+	 * <p>The method names are converted with the template
+	 * compiled the first time the method is converted.</p>
+	 */
+	public static class SinglePass implements MethodConverter {
+		
+		private static final Logger logger = LoggerFactory.getLogger(SinglePass.class);
+
+		@Override
+		public String convert(String message, Method method, Object[] arguments) {
+			if (method != null && method.getName().equals(message)) {
+				MethodTemplate template = MethodTemplate.of(method);
+				try {
+					return template.render(arguments);
+				} catch (Exception e) {
+					logger.error("Impossiple to convert \"" + message + "\" to a message", e);
+					return template.message();
+				}
+			}
+			try {
+				return MethodTemplate.render(message, method, arguments);
+			} catch (Exception e) {
+				logger.error("Impossiple to convert \"" + message + "\" to a message", e);
+				return MethodTemplate.separate(message);
+			}
+		}
+		
+	}
+	
 	public static class ReplaceCamelCaseWithSpace implements MethodConverter {
 
 		private static final String REGEX_CAMEL_CASE = "(?<!_)([A-Z])";
@@ -110,17 +141,18 @@ public interface MethodConverter {
 	
 	public static class ReplaceArguments implements MethodConverter {
 
-		private static final String REGEX_VARIABLE = "(\\$\\d+)(.*)";
-		private static final String REGEX_VARIABLE_NUMBER = "$1";
-		private static final String REGEX_VARIABLE_POST = " $2";
+		static final String REGEX_VARIABLE = "(\\$\\d+)(.*)";
+		static final String REGEX_VARIABLE_NUMBER = "$1";
+		static final String REGEX_VARIABLE_POST = " $2";
 		static final String ARGUMENT_OUT_OF_BOUND = "<out_of_bound_argument>";
+		static final String DATE_FORMAT = "dd/MM/yyyy";
 		private static final String SPACE = " ";
 		
 		@Override
 		public String convert(String message, Method method, Object[] arguments) {
 			String[] words = message.split(SPACE);
 		    StringBuffer buffer = new StringBuffer();
-		    SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy");
+		    SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
 		    for (String word : words) {
 		    	if (word.matches(REGEX_VARIABLE)) {
 		    		String number = word.replaceAll(REGEX_VARIABLE, REGEX_VARIABLE_NUMBER).substring(1);
@@ -128,9 +160,13 @@ public interface MethodConverter {
 		    		int index = Integer.parseInt(number) - 1;
 		    		if (index < arguments.length) {
 		    			Object argument = arguments[index];
-		    			Tell tell = isAnnotationPresent(method, index);
+		    			MethodMetadata metadata = MethodMetadata.of(method);
+		    			if (index >= metadata.getParameters()) {
+		    				throw new IllegalArgumentException("The argument " + (index + 1) + " is not a parameter of the method");
+		    			}
+		    			TellTemplate tell = metadata.getTellTemplate(index);
 		    			if (tell != null) {
-		    				word = format(tell, argument, dateFormat) + post;
+		    				word = tell.format(argument, dateFormat) + post;
 		    			} else {
 		    				word = format(argument, dateFormat) + post;
 		    			}
@@ -143,39 +179,11 @@ public interface MethodConverter {
 		    return buffer.toString().substring(1);
 		}
 		
-		private Tell isAnnotationPresent(Method method, int index) {
-			Annotation[] annotations = method.getParameterAnnotations()[index];
-			for (Annotation annotation : annotations) {
-				if (annotation instanceof Tell) {
-					return (Tell) annotation;
-				}
-			}
-			return null;
-		}
-		
 		static final String FIELD_NOT_FOUND = "<field_not_found>"; 
 		
-		private String format(Tell tell, Object argument, SimpleDateFormat dateFormat) {
-			String result = tell.value();
-			Pattern pattern = Pattern.compile("\\$\\{(.*?)\\}");
-			Matcher matcher = pattern.matcher(tell.value());
-			while (matcher.find()) {
-				String fieldName = matcher.group(1);
-				try {
-					Field field = argument.getClass().getDeclaredField(fieldName);
-					field.setAccessible(true);
-					String value = format(field.get(argument), dateFormat);
-					result = result.replaceAll("\\$\\{" + fieldName + "\\}", value);
-				} catch (Exception e) {
-					result = result.replaceAll("\\$\\{" + fieldName + "\\}", FIELD_NOT_FOUND);
-				}
-			}
-			return result;
-		}
-	
 		static final String ARGUMENT_NULL = "<empty>";
 		
-		private String format(Object argument, SimpleDateFormat dateFormat) {
+		static String format(Object argument, SimpleDateFormat dateFormat) {
 			if (argument == null) {
 				return ARGUMENT_NULL;
 			} else if (argument instanceof Date) {
@@ -194,7 +202,7 @@ public interface MethodConverter {
 		static final String COMMA_SEPARATOR = ", ";
 		static final String AND_SEPARATOR = " and ";
 		
-		private String collectionToString(Collection<?> collection, SimpleDateFormat dateFormat) {
+		private static String collectionToString(Collection<?> collection, SimpleDateFormat dateFormat) {
 			StringBuilder result = new StringBuilder();
 			Iterator<?> iterator = collection.iterator();
 			while (iterator.hasNext()) {
@@ -206,7 +214,7 @@ public interface MethodConverter {
 			return result.toString();
 		}
 		
-		private String arrayToString(Object array, SimpleDateFormat dateFormat) {
+		private static String arrayToString(Object array, SimpleDateFormat dateFormat) {
 			Collection<Object> collection = new ArrayList<Object>();
 			for (int i = 0; i < Array.getLength(array); i++) {
 				collection.add(Array.get(array, i));
@@ -0,0 +1,190 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * <p>What the interceptor and the converters read from the
+ * annotations of a method, read once the first time the
+ * method is intercepted and then cached.</p>
+ * @author alessandro.simi@gmail.com
+ */
+final class MethodMetadata {
+
+	private final static String FINALIZE = "finalize";
+	
+	private final Story story;
+	private final Expected expected;
+	private final Budget budget;
+	private final Pattern expectedMessage;
+	private final Tell[] tells;
+	private final TellTemplate[] tellTemplates;
+	private final boolean finalize;
+	private final Method method;
+	
+	private volatile MethodTemplate template;
+	
+	private MethodMetadata(Method method) {
+		this.method = method;
+		this.story = method.getAnnotation(Story.class);
+		this.expected = method.getAnnotation(Expected.class);
+		this.budget = method.getAnnotation(Budget.class);
+		this.expectedMessage = compile(expected);
+		this.tells = tells(method.getParameterAnnotations());
+		this.tellTemplates = tellTemplates(tells);
+		this.finalize = FINALIZE.equalsIgnoreCase(method.getName());
+	}
+	
+	private static final ConcurrentMap<Method, MethodMetadata> metadata = new ConcurrentHashMap<Method, MethodMetadata>();
+	
+	/**
+	 * @return the metadata of the method, read the
+	 * first time the metadata is requested.
+	 */
+	static MethodMetadata of(Method method) {
+		MethodMetadata result = metadata.get(method);
+		if (result == null) {
+			result = new MethodMetadata(method);
+			MethodMetadata existing = metadata.putIfAbsent(method, result);
+			if (existing != null) {
+				result = existing;
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * A message not valid as regular expression is left to
+	 * {@link String#matches(String)} which fails as before
+	 * when the exception is verified.
+	 */
+	private static Pattern compile(Expected expected) {
+		if (expected == null || expected.message().isEmpty()) {
+			return null;
+		}
+		try {
+			return Pattern.compile(expected.message());
+		} catch (PatternSyntaxException e) {
+			return null;
+		}
+	}
+	
+	private static Tell[] tells(Annotation[][] annotations) {
+		Tell[] tells = new Tell[annotations.length];
+		for (int i = 0; i < annotations.length; i++) {
+			for (Annotation annotation : annotations[i]) {
+				if (annotation instanceof Tell) {
+					tells[i] = (Tell) annotation;
+				}
+			}
+		}
+		return tells;
+	}
+	
+	private static TellTemplate[] tellTemplates(Tell[] tells) {
+		TellTemplate[] templates = new TellTemplate[tells.length];
+		for (int i = 0; i < tells.length; i++) {
+			if (tells[i] != null) {
+				templates[i] = TellTemplate.compile(tells[i]);
+			}
+		}
+		return templates;
+	}
+	
+	/**
+	 * @return the {@link Story} annotation, null if
+	 * the method is a step.
+	 */
+	Story getStory() {
+		return story;
+	}
+	
+	/**
+	 * @return the {@link Expected} annotation, null if
+	 * the method expects no exception.
+	 */
+	Expected getExpected() {
+		return expected;
+	}
+	
+	/**
+	 * @return the {@link Budget} annotation, null if
+	 * the method has no time budget.
+	 */
+	Budget getBudget() {
+		return budget;
+	}
+	
+	/**
+	 * @return true if the message of the exception matches
+	 * the message expected, always when no message is expected.
+	 */
+	boolean matchesExpectedMessage(String message) {
+		if (expected == null || expected.message().isEmpty()) {
+			return true;
+		} else if (message == null) {
+			return false;
+		} else if (expectedMessage != null) {
+			return expectedMessage.matcher(message).matches();
+		} else {
+			return message.matches(expected.message());
+		}
+	}
+	
+	/**
+	 * @return the {@link Tell} annotation of the parameter,
+	 * null if absent or if the index is not a parameter.
+	 */
+	Tell getTell(int index) {
+		return index >= 0 && index < tells.length ? tells[index] : null;
+	}
+	
+	/**
+	 * @return the {@link Tell} annotation of the parameter compiled,
+	 * null if absent or if the index is not a parameter.
+	 */
+	TellTemplate getTellTemplate(int index) {
+		return index >= 0 && index < tellTemplates.length ? tellTemplates[index] : null;
+	}
+	
+	int getParameters() {
+		return tells.length;
+	}
+	
+	boolean isFinalize() {
+		return finalize;
+	}
+	
+	/**
+	 * @return the template of the method name, compiled
+	 * the first time the method is converted.
+	 */
+	MethodTemplate getTemplate() {
+		MethodTemplate template = this.template;
+		if (template == null) {
+			template = MethodTemplate.compile(MethodTemplate.separate(method.getName()), method);
+			this.template = template;
+		}
+		return template;
+	}
+	
+}
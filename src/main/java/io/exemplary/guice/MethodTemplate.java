@@ -0,0 +1,480 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.lang.reflect.Method;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>The message of a method compiled once in literal
+ * segments and argument slots, so every call only renders
+ * the arguments.</p>
+ * <p>The template is compiled from the message with the
+ * camel case, the underscores and the dollars already
+ * replaced and renders the same message of the
+ * {@link MethodConverter.ReplaceArguments},
+ * {@link MethodConverter.RemoveMultiSpacesAndTrim} and
+ * {@link MethodConverter.SetFirstLetterUpperCase} converters.</p>
+ * @author alessandro.simi@gmail.com
+ */
+final class MethodTemplate {
+
+	private static final String SPACE = " ";
+	
+	private final String message;
+	private final Segment[] segments;
+	private final boolean valid;
+	
+	private MethodTemplate(String message, Segment[] segments, boolean valid) {
+		this.message = message;
+		this.segments = segments;
+		this.valid = valid;
+	}
+	
+	/**
+	 * @return the template of the method name, compiled
+	 * the first time the method is converted.
+	 */
+	static MethodTemplate of(Method method) {
+		return MethodMetadata.of(method).getTemplate();
+	}
+	
+	/**
+	 * @param message the message with spaces instead of camel
+	 * case, underscores and before the dollars.
+	 */
+	static MethodTemplate compile(String message, Method method) {
+		MethodMetadata metadata = MethodMetadata.of(method);
+		TellTemplate[] tells = new TellTemplate[metadata.getParameters()];
+		for (int i = 0; i < tells.length; i++) {
+			tells[i] = metadata.getTellTemplate(i);
+		}
+		return compile(message, tells);
+	}
+	
+	/**
+	 * Compiles the template of a method not available, the
+	 * template can only render the arguments already formatted.
+	 * @param parameters the number of parameters of the method.
+	 */
+	static MethodTemplate compile(String message, int parameters) {
+		return compile(message, new TellTemplate[parameters]);
+	}
+	
+	private static MethodTemplate compile(String message, TellTemplate[] tells) {
+		String[] words = message.split(SPACE);
+		List<Segment> segments = new ArrayList<Segment>();
+		StringBuilder literal = new StringBuilder();
+		boolean valid = words.length > 0;
+		for (int i = 0; i < words.length; i++) {
+			String word = words[i];
+			if (i > 0) {
+				literal.append(SPACE);
+			}
+			if (word.matches(MethodConverter.ReplaceArguments.REGEX_VARIABLE)) {
+				String number = word.replaceAll(MethodConverter.ReplaceArguments.REGEX_VARIABLE, MethodConverter.ReplaceArguments.REGEX_VARIABLE_NUMBER).substring(1);
+				String post = word.replaceAll(MethodConverter.ReplaceArguments.REGEX_VARIABLE, MethodConverter.ReplaceArguments.REGEX_VARIABLE_POST);
+				int index;
+				try {
+					index = Integer.parseInt(number) - 1;
+				} catch (NumberFormatException e) {
+					index = -1;
+				}
+				valid &= index >= 0;
+				if (literal.length() > 0) {
+					segments.add(new Literal(literal.toString()));
+					literal.setLength(0);
+				}
+				segments.add(new Argument(index, tells.length, index >= 0 && index < tells.length ? tells[index] : null));
+				literal.append(post);
+			} else {
+				literal.append(word);
+			}
+		}
+		if (literal.length() > 0) {
+			segments.add(new Literal(literal.toString()));
+		}
+		return new MethodTemplate(message, segments.toArray(new Segment[segments.size()]), valid);
+	}
+	
+	/**
+	 * @return the message used to compile the template, it is
+	 * also the result of the conversion when the rendering fails.
+	 */
+	String message() {
+		return message;
+	}
+	
+	private static final ThreadLocal<Context> contexts = new ThreadLocal<Context>() {
+		@Override
+		protected Context initialValue() {
+			return new Context();
+		}
+	};
+	
+	/**
+	 * Reusable buffer and date format of the thread.
+	 */
+	private static class Context {
+		private final StringBuilder builder = new StringBuilder();
+		private final SimpleDateFormat dateFormat = new SimpleDateFormat(MethodConverter.ReplaceArguments.DATE_FORMAT);
+	}
+	
+	/**
+	 * @return the message with the arguments.
+	 * @throws Exception if an argument cannot be rendered.
+	 */
+	String render(Object[] arguments) throws Exception {
+		if (!valid) {
+			throw new IllegalArgumentException("Invalid argument reference in \"" + message + "\"");
+		}
+		Context context = contexts.get();
+		StringBuilder builder = context.builder;
+		builder.setLength(0);
+		for (Segment segment : segments) {
+			segment.render(builder, arguments, context.dateFormat);
+		}
+		return finish(builder);
+	}
+	
+	/**
+	 * @return the arguments formatted as the converters do,
+	 * null where the formatting fails, to render them later
+	 * with {@link #render(String[])}.
+	 */
+	static String[] format(Method method, Object[] arguments) {
+		MethodMetadata metadata = MethodMetadata.of(method);
+		SimpleDateFormat dateFormat = contexts.get().dateFormat;
+		String[] formatted = new String[arguments.length];
+		for (int i = 0; i < arguments.length; i++) {
+			try {
+				TellTemplate tell = metadata.getTellTemplate(i);
+				if (tell != null) {
+					formatted[i] = tell.format(arguments[i], dateFormat);
+				} else {
+					formatted[i] = MethodConverter.ReplaceArguments.format(arguments[i], dateFormat);
+				}
+			} catch (Exception e) {
+				formatted[i] = null;
+			}
+		}
+		return formatted;
+	}
+	
+	/**
+	 * @param arguments the arguments already formatted, null
+	 * when their formatting failed.
+	 * @return the message with the arguments.
+	 * @throws IllegalArgumentException if an argument cannot be rendered.
+	 */
+	String render(String[] arguments) {
+		if (!valid) {
+			throw new IllegalArgumentException("Invalid argument reference in \"" + message + "\"");
+		}
+		StringBuilder builder = contexts.get().builder;
+		builder.setLength(0);
+		for (Segment segment : segments) {
+			segment.render(builder, arguments);
+		}
+		return finish(builder);
+	}
+	
+	/**
+	 * <p>Renders the message in a single pass without compiling
+	 * a template: the camel case, the underscores, the dollars
+	 * and the arguments are replaced while the message is read
+	 * char by char.</p>
+	 * @return the message with the arguments.
+	 * @throws Exception if an argument cannot be rendered, the
+	 * message is then the one returned by {@link #separate(String)}.
+	 */
+	static String render(String message, Method method, Object[] arguments) throws Exception {
+		Context context = contexts.get();
+		StringBuilder builder = context.builder;
+		builder.setLength(0);
+		MethodMetadata metadata = null;
+		boolean blank = true;
+		int length = message.length();
+		for (int i = 0; i < length; i++) {
+			char c = message.charAt(i);
+			if (c == '_') {
+				int end = i + 1;
+				while (end < length && message.charAt(end) == '_') {
+					end++;
+				}
+				for (int pairs = (end - i) / 2; pairs > 0; pairs--) {
+					builder.append(COMMA);
+					blank = false;
+				}
+				if ((end - i) % 2 == 1) {
+					builder.append(' ');
+				}
+				i = end - 1;
+			} else if (c == '$') {
+				builder.append(' ');
+				blank = false;
+				int digits = i + 1;
+				while (digits < length && isDigit(message.charAt(digits))) {
+					digits++;
+				}
+				if (digits > i + 1 && !hasLineTerminator(message, digits)) {
+					int index = parseIndex(message, i + 1, digits);
+					if (index < arguments.length) {
+						if (metadata == null) {
+							metadata = MethodMetadata.of(method);
+						}
+						if (index >= metadata.getParameters()) {
+							throw new IllegalArgumentException("The argument " + (index + 1) + " is not a parameter of the method");
+						}
+						TellTemplate tell = metadata.getTellTemplate(index);
+						Object argument = arguments[index];
+						if (tell != null) {
+							builder.append(tell.format(argument, context.dateFormat));
+						} else {
+							builder.append(MethodConverter.ReplaceArguments.format(argument, context.dateFormat));
+						}
+					} else {
+						builder.append(MethodConverter.ReplaceArguments.ARGUMENT_OUT_OF_BOUND);
+					}
+					builder.append(' ');
+					i = digits - 1;
+				} else {
+					builder.append(c);
+				}
+			} else if (isCamelCase(message, i)) {
+				builder.append(' ');
+				appendLowerCase(builder, c);
+				blank = false;
+			} else {
+				builder.append(c);
+				blank &= c == ' ';
+			}
+		}
+		if (blank && length > 0) {
+			throw new IllegalArgumentException("The message \"" + message + "\" has no words");
+		}
+		return finish(builder);
+	}
+	
+	private static final String COMMA = ", ";
+	
+	/**
+	 * @return the message with a space before the camel case
+	 * letters (in lower case) and the dollars, a comma for every
+	 * double underscore and a space for the other underscores.
+	 */
+	static String separate(String message) {
+		int length = message.length();
+		StringBuilder builder = new StringBuilder(length + 8);
+		for (int i = 0; i < length; i++) {
+			char c = message.charAt(i);
+			if (c == '_') {
+				if (i + 1 < length && message.charAt(i + 1) == '_') {
+					builder.append(COMMA);
+					i++;
+				} else {
+					builder.append(' ');
+				}
+			} else if (c == '$') {
+				builder.append(' ').append(c);
+			} else if (isCamelCase(message, i)) {
+				builder.append(' ');
+				appendLowerCase(builder, c);
+			} else {
+				builder.append(c);
+			}
+		}
+		return builder.toString();
+	}
+	
+	private static boolean isCamelCase(String message, int index) {
+		char c = message.charAt(index);
+		return c >= 'A' && c <= 'Z' && (index == 0 || message.charAt(index - 1) != '_');
+	}
+	
+	/**
+	 * The lower case of the capital I depends
+	 * on the locale (e.g. Turkish).
+	 */
+	private static void appendLowerCase(StringBuilder builder, char c) {
+		if (c == 'I') {
+			builder.append(String.valueOf(c).toLowerCase());
+		} else {
+			builder.append((char) (c - 'A' + 'a'));
+		}
+	}
+	
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+	
+	/**
+	 * @return true if the rest of the word starting at the index
+	 * has a line terminator, so it is not an argument.
+	 */
+	private static boolean hasLineTerminator(String message, int index) {
+		for (int i = index; i < message.length(); i++) {
+			char c = message.charAt(i);
+			if (c == ' ' || c == '_' || c == '$' || isCamelCase(message, i)) {
+				return false;
+			} else if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * @return the zero based index of the argument.
+	 */
+	private static int parseIndex(String message, int start, int end) {
+		long number = 0;
+		for (int i = start; i < end; i++) {
+			number = number * 10 + (message.charAt(i) - '0');
+			if (number > Integer.MAX_VALUE) {
+				throw new NumberFormatException("For input string: \"" + message.substring(start, end) + "\"");
+			}
+		}
+		if (number == 0) {
+			throw new ArrayIndexOutOfBoundsException(-1);
+		}
+		return (int) number - 1;
+	}
+	
+	/**
+	 * Removes multiple spaces, trims and sets the first
+	 * letter upper case modifying the builder in place.
+	 */
+	private static String finish(StringBuilder builder) {
+		int start = 0;
+		int end = builder.length();
+		while (start < end && builder.charAt(start) <= ' ') {
+			start++;
+		}
+		while (end > start && builder.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		int length = 0;
+		boolean space = false;
+		for (int i = start; i < end; i++) {
+			char c = builder.charAt(i);
+			if (isWhitespace(c)) {
+				if (!space) {
+					builder.setCharAt(length++, ' ');
+					space = true;
+				}
+			} else {
+				builder.setCharAt(length++, c);
+				space = false;
+			}
+		}
+		builder.setLength(length);
+		if (length == 0) {
+			return "";
+		}
+		char first = builder.charAt(0);
+		if (first >= 'a' && first <= 'z' && first != 'i') {
+			builder.setCharAt(0, (char) (first - 'a' + 'A'));
+			return builder.toString();
+		} else if (first < 128 && first != 'i') {
+			return builder.toString();
+		} else {
+			return builder.substring(0, 1).toUpperCase() + builder.substring(1);
+		}
+	}
+	
+	/**
+	 * @return true if the char matches the {@code \s}
+	 * regular expression.
+	 */
+	static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+	
+	private static interface Segment {
+		
+		void render(StringBuilder builder, Object[] arguments, SimpleDateFormat dateFormat) throws Exception;
+		
+		void render(StringBuilder builder, String[] arguments);
+		
+	}
+	
+	private static class Literal implements Segment {
+		
+		private final String text;
+		
+		Literal(String text) {
+			this.text = text;
+		}
+
+		@Override
+		public void render(StringBuilder builder, Object[] arguments, SimpleDateFormat dateFormat) {
+			builder.append(text);
+		}
+		
+		@Override
+		public void render(StringBuilder builder, String[] arguments) {
+			builder.append(text);
+		}
+		
+	}
+	
+	private static class Argument implements Segment {
+		
+		private final int index;
+		private final int parameters;
+		private final TellTemplate tell;
+		
+		Argument(int index, int parameters, TellTemplate tell) {
+			this.index = index;
+			this.parameters = parameters;
+			this.tell = tell;
+		}
+
+		@Override
+		public void render(StringBuilder builder, Object[] arguments, SimpleDateFormat dateFormat) throws Exception {
+			if (index < arguments.length) {
+				if (index >= parameters) {
+					throw new IllegalArgumentException("The argument " + (index + 1) + " is not a parameter of the method");
+				}
+				Object argument = arguments[index];
+				if (tell != null) {
+					builder.append(tell.format(argument, dateFormat));
+				} else {
+					builder.append(MethodConverter.ReplaceArguments.format(argument, dateFormat));
+				}
+			} else {
+				builder.append(MethodConverter.ReplaceArguments.ARGUMENT_OUT_OF_BOUND);
+			}
+		}
+		
+		@Override
+		public void render(StringBuilder builder, String[] arguments) {
+			if (index < arguments.length) {
+				if (index >= parameters || arguments[index] == null) {
+					throw new IllegalArgumentException("The argument " + (index + 1) + " cannot be rendered");
+				}
+				builder.append(arguments[index]);
+			} else {
+				builder.append(MethodConverter.ReplaceArguments.ARGUMENT_OUT_OF_BOUND);
+			}
+		}
+		
+	}
+	
+}
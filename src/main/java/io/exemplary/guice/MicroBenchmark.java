@@ -0,0 +1,54 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Runs a {@link Story} as a micro benchmark: the story runs
+ * the warmup iterations and then the measured iterations, and
+ * it is printed only the first time. The mean, the percentiles
+ * and the throughput of the measured iterations are logged
+ * under the {@code story.benchmarks} logger. All the iterations
+ * run on the same instance of the test class.</p>
+ * <pre>
+ * &#64;Story &#64;MicroBenchmark(warmup = 1000, iterations = 10000, threshold = 5)
+ * public void theUserSearchesABook() { ... }</pre>
+ * @author alessandro.simi@gmail.com
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD})
+public @interface MicroBenchmark {
+
+	int warmup() default 10;
+	
+	int iterations() default 100;
+	
+	/**
+	 * @return the maximum duration in the unit of the percentile
+	 * of the iterations, zero to never fail the story.
+	 */
+	long threshold() default 0;
+	
+	double percentile() default 99;
+	
+	TimeUnit unit() default TimeUnit.MILLISECONDS;
+	
+}
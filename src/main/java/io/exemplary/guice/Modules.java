@@ -22,6 +22,7 @@ import java.lang.annotation.Target;
 
 import com.google.inject.Guice;
 import com.google.inject.Module;
+import com.google.inject.Stage;
 
 /**
  * <p>Specifies the {@link Guice} modules
@@ -33,6 +34,17 @@ import com.google.inject.Module;
  * }</pre>
  * <p>This annotation is mandatory when {@link TestRunner}
  * or {@link StoryRunner} is used to run the test.</p>
+ * <p>The modules shared by many test classes can be listed
+ * as {@link #parent()} modules. The parent modules build a
+ * single injector shared by all the classes with the same
+ * parent modules and the other modules build a cheap child
+ * injector of it.</p>
+ * <pre>
+ * {@literal @}RunWith(TestRunner.class)
+ * {@literal @}Modules(value = MyFeatureModule.class, parent = { MyDatabaseModule.class, MyServerModule.class })
+ * public class MyTest {
+ *   ...
+ * }</pre>
  * @author alessandro.simi@gmail.com
  */
 @Retention(RetentionPolicy.RUNTIME)
@@ -41,5 +53,22 @@ public @interface Modules {
 
 	Class<? extends Module>[] value();
 	
+	/**
+	 * The modules of the parent injector, the modules
+	 * listed in {@link #value()} as well are ignored.
+	 */
+	Class<? extends Module>[] parent() default {};
+	
+	/**
+	 * <p>The stage of the injector. The {@link Stage#DEVELOPMENT}
+	 * stage creates the singletons lazily, suitable for the tests
+	 * using a few bindings of large modules, while the
+	 * {@link Stage#PRODUCTION} stage creates them eagerly.</p>
+	 * <p>The {@link Stage#TOOL} stage only validates the bindings
+	 * of the modules and of the test class without running the
+	 * tests.</p>
+	 */
+	Stage stage() default Stage.DEVELOPMENT;
+	
 }
 
@@ -0,0 +1,83 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates daemon threads named after the test class
+ * so they are recognizable in the thread dumps and
+ * never keep the JVM alive.
+ * <p>The virtual threads are created through reflection,
+ * so the library still runs on the JVMs without them.</p>
+ * @author alessandro.simi@gmail.com
+ */
+class NamedThreadFactory implements ThreadFactory {
+	
+	private static final Logger logger = LoggerFactory.getLogger(NamedThreadFactory.class);
+	
+	private final String name;
+	private final AtomicInteger counter = new AtomicInteger();
+	
+	NamedThreadFactory(String name) {
+		this.name = name;
+	}
+
+	@Override
+	public Thread newThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	}
+	
+	/**
+	 * @param virtual true to create virtual threads
+	 * if the JVM supports them.
+	 * @return the factory of the threads named after the name,
+	 * virtual or platform daemon threads.
+	 */
+	static ThreadFactory create(String name, boolean virtual) {
+		if (virtual) {
+			ThreadFactory factory = virtual(name);
+			if (factory != null) {
+				return factory;
+			}
+		}
+		return new NamedThreadFactory(name);
+	}
+	
+	private static volatile boolean warned;
+	
+	private static ThreadFactory virtual(String name) {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-", 1L);
+			return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+		} catch (Exception e) {
+			if (!warned) {
+				warned = true;
+				logger.warn("The virtual threads are not supported by the JVM, the platform threads are used instead");
+			}
+			return null;
+		}
+	}
+	
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>Runs the test (or story) methods of the class
+ * concurrently on a bounded pool of threads instead
+ * of one after another.</p>
+ * <pre>
+ * {@literal @}RunWith(StoryRunner.class) {@literal @}Modules(MyModule.class)
+ * {@literal @}Parallel(threads = 8)
+ * public class MyStoryTest {
+ *   ...
+ * }</pre>
+ * <p>The {@link TestInterceptor#beforeTestRuns(java.lang.reflect.Method)}
+ * and {@link TestInterceptor#afterTestRuns(java.lang.reflect.Method)}
+ * methods are invoked on the same thread running the test,
+ * so the interceptors shared between tests must be thread safe.</p>
+ * @author alessandro.simi@gmail.com
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Parallel {
+
+	/**
+	 * @return the maximum number of threads running
+	 * the tests, zero means one for each available processor.
+	 */
+	int threads() default 0;
+	
+	/**
+	 * @return true to run the tests on virtual threads when the
+	 * JVM supports them, still no more than the threads at once.
+	 */
+	boolean virtual() default false;
+	
+}
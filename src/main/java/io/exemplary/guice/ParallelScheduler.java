@@ -0,0 +1,96 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.runners.model.RunnerScheduler;
+
+/**
+ * <p>Schedules the children of a runner on a bounded
+ * pool of threads as described by the {@link Parallel}
+ * annotation.</p>
+ * <p>The pool is created when the first child is scheduled
+ * and shut down when all the children are finished, so
+ * no thread survives the run of the test class.</p>
+ * @author alessandro.simi@gmail.com
+ */
+class ParallelScheduler implements RunnerScheduler {
+
+	private final String name;
+	private final int threads;
+	private final boolean virtual;
+	
+	private ExecutorService executor;
+	private List<Future<?>> children = new ArrayList<Future<?>>();
+	
+	ParallelScheduler(Class<?> classToRun, Parallel parallel, boolean virtual) {
+		this.name = classToRun.getSimpleName();
+		this.threads = parallel.threads() > 0 ? parallel.threads() : Runtime.getRuntime().availableProcessors();
+		this.virtual = virtual;
+	}
+
+	@Override
+	public void schedule(Runnable child) {
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(threads, NamedThreadFactory.create(name, virtual));
+		}
+		children.add(executor.submit(child));
+	}
+
+	/**
+	 * Waits all the children and propagates the first
+	 * error not already notified by the runner.
+	 */
+	@Override
+	public void finished() {
+		if (executor == null) {
+			return;
+		}
+		Throwable failure = null;
+		try {
+			for (Future<?> child : children) {
+				try {
+					child.get();
+				} catch (ExecutionException e) {
+					if (failure == null) {
+						failure = e.getCause();
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			failure = e;
+		} finally {
+			executor.shutdownNow();
+			executor = null;
+			children = new ArrayList<Future<?>>();
+		}
+		if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		} else if (failure instanceof Error) {
+			throw (Error) failure;
+		} else if (failure != null) {
+			throw new IllegalStateException("Impossible to run the tests of " + name, failure);
+		}
+	}
+	
+}
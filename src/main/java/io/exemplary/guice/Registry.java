@@ -0,0 +1,290 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.junit.runners.model.InitializationError;
+
+/**
+ * <p>Caches the values shared by the runners with the same
+ * {@link Modules} key (e.g. the Guice injector).</p>
+ * <p>Every value is built only once: the runners asking for
+ * a key while its value is being built wait the end of the
+ * build and receive the same value or the same error. A
+ * failed build is not cached so the next runner asking for
+ * the key tries again.</p>
+ * <p>The registry can keep a maximum number of values, removing
+ * the least recently used ones, and can remove a value as soon
+ * as the last runner using it releases it. A value is never
+ * removed while a runner is using it and the {@link Listener}
+ * is notified for every value removed.</p>
+ * @author alessandro.simi@gmail.com
+ */
+final class Registry<V> {
+
+	/**
+	 * Builds the value of a key.
+	 */
+	static interface Builder<V> {
+		
+		V build() throws InitializationError;
+		
+	}
+	
+	/**
+	 * Listens the values removed from the registry.
+	 */
+	static interface Listener<V> {
+		
+		void onRemove(String key, V value);
+		
+	}
+	
+	private final Map<String, Entry<V>> entries = new LinkedHashMap<String, Entry<V>>(16, 0.75f, true);
+	private final int maximumSize;
+	private volatile boolean releaseUnused;
+	private final Listener<V> listener;
+	
+	/**
+	 * Creates a registry that never removes the values.
+	 */
+	Registry() {
+		this(0, false, null);
+	}
+	
+	/**
+	 * @param maximumSize the maximum number of values, zero means unbounded.
+	 * @param releaseUnused true to remove a value when it is not used anymore.
+	 * @param listener notified when a value is removed, it can be null.
+	 */
+	Registry(int maximumSize, boolean releaseUnused, Listener<V> listener) {
+		this.maximumSize = maximumSize;
+		this.releaseUnused = releaseUnused;
+		this.listener = listener;
+	}
+	
+	/**
+	 * @param releaseUnused true to remove a value when it is not used anymore.
+	 */
+	void setReleaseUnused(boolean releaseUnused) {
+		this.releaseUnused = releaseUnused;
+	}
+	
+	/**
+	 * @return the value of the key, building it with the
+	 * builder if nobody else has already done it.
+	 * @throws InitializationError if the build fails.
+	 */
+	V get(String key, Builder<V> builder) throws InitializationError {
+		return get(key, builder, false);
+	}
+	
+	/**
+	 * @return the value of the key as {@link #get(String, Builder)}
+	 * keeping it in the registry until it is released.
+	 * @throws InitializationError if the build fails.
+	 */
+	V acquire(String key, Builder<V> builder) throws InitializationError {
+		return get(key, builder, true);
+	}
+	
+	private V get(String key, Builder<V> builder, boolean acquire) throws InitializationError {
+		Entry<V> entry;
+		boolean build = false;
+		synchronized (entries) {
+			entry = entries.get(key);
+			if (entry == null) {
+				entry = new Entry<V>(builder);
+				entries.put(key, entry);
+				build = true;
+			}
+			if (acquire) {
+				entry.references++;
+			}
+		}
+		if (build) {
+			entry.task.run();
+		}
+		try {
+			return entry.task.get();
+		} catch (ExecutionException e) {
+			synchronized (entries) {
+				if (entries.get(key) == entry) {
+					entries.remove(key);
+				}
+			}
+			throw toInitializationError(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InitializationError(e);
+		} finally {
+			if (build) {
+				evict();
+			}
+		}
+	}
+	
+	/**
+	 * Releases the value acquired with {@link #acquire(String, Builder)}.
+	 */
+	void release(String key, V value) {
+		List<Entry<V>> removed = new ArrayList<Entry<V>>();
+		synchronized (entries) {
+			Entry<V> entry = entries.get(key);
+			if (entry != null && entry.references > 0 && entry.is(value)) {
+				entry.references--;
+				if (entry.references == 0 && releaseUnused) {
+					entries.remove(key);
+					entry.key = key;
+					removed.add(entry);
+				}
+			}
+		}
+		notify(removed);
+		evict();
+	}
+	
+	/**
+	 * @return the number of runners using the value of the key.
+	 */
+	int references(String key) {
+		synchronized (entries) {
+			Entry<V> entry = entries.get(key);
+			return entry != null ? entry.references : 0;
+		}
+	}
+	
+	/**
+	 * Removes the value of the key even if it is used.
+	 */
+	void remove(String key) {
+		List<Entry<V>> removed = new ArrayList<Entry<V>>();
+		synchronized (entries) {
+			Entry<V> entry = entries.remove(key);
+			if (entry != null) {
+				entry.key = key;
+				removed.add(entry);
+			}
+		}
+		notify(removed);
+	}
+	
+	/**
+	 * Removes all the values.
+	 */
+	void clear() {
+		List<Entry<V>> removed = new ArrayList<Entry<V>>();
+		synchronized (entries) {
+			for (Map.Entry<String, Entry<V>> entry : entries.entrySet()) {
+				entry.getValue().key = entry.getKey();
+				removed.add(entry.getValue());
+			}
+			entries.clear();
+		}
+		notify(removed);
+	}
+	
+	/**
+	 * Removes the least recently used values not used
+	 * by any runner exceeding the maximum size.
+	 */
+	private void evict() {
+		if (maximumSize <= 0) {
+			return;
+		}
+		List<Entry<V>> removed = new ArrayList<Entry<V>>();
+		synchronized (entries) {
+			Iterator<Map.Entry<String, Entry<V>>> iterator = entries.entrySet().iterator();
+			while (entries.size() > maximumSize && iterator.hasNext()) {
+				Map.Entry<String, Entry<V>> entry = iterator.next();
+				if (entry.getValue().references == 0 && entry.getValue().task.isDone()) {
+					iterator.remove();
+					entry.getValue().key = entry.getKey();
+					removed.add(entry.getValue());
+				}
+			}
+		}
+		notify(removed);
+	}
+	
+	/**
+	 * Notifies the listener out of the lock
+	 * because the removal can be slow.
+	 */
+	private void notify(List<Entry<V>> removed) {
+		if (listener == null) {
+			return;
+		}
+		for (Entry<V> entry : removed) {
+			V value = entry.value();
+			if (value != null) {
+				listener.onRemove(entry.key, value);
+			}
+		}
+	}
+	
+	private InitializationError toInitializationError(Throwable cause) {
+		if (cause instanceof InitializationError) {
+			return new InitializationError(((InitializationError) cause).getCauses());
+		} else {
+			return new InitializationError(cause);
+		}
+	}
+	
+	private static class Entry<V> {
+		
+		private final FutureTask<V> task;
+		private int references;
+		private String key;
+		
+		Entry(final Builder<V> builder) {
+			task = new FutureTask<V>(new Callable<V>() {
+				@Override
+				public V call() throws Exception {
+					return builder.build();
+				}
+			});
+		}
+		
+		boolean is(V value) {
+			return value() == value;
+		}
+		
+		/**
+		 * @return the value if it is built, null otherwise.
+		 */
+		V value() {
+			if (task.isDone()) {
+				try {
+					return task.get();
+				} catch (Exception e) {
+					return null;
+				}
+			}
+			return null;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Key;
+import com.google.inject.OutOfScopeException;
+import com.google.inject.Provider;
+import com.google.inject.Scope;
+
+/**
+ * <p>The {@link TestScoped}, {@link ClassScoped} and
+ * {@link StoryScoped} scopes. The instances live in a
+ * {@link Context} opened by the runners in the thread
+ * running the test, so the parallel tests have their own
+ * instances and share only the ones of the class.</p>
+ * @author alessandro.simi@gmail.com
+ */
+final class RunnerScope implements Scope {
+
+	private static final Logger logger = LoggerFactory.getLogger(RunnerScope.class);
+	
+	static final RunnerScope TEST = new RunnerScope(TestScoped.class.getSimpleName());
+	static final RunnerScope CLASS = new RunnerScope(ClassScoped.class.getSimpleName());
+	static final RunnerScope STORY = new RunnerScope(StoryScoped.class.getSimpleName());
+	
+	private final String name;
+	private final ThreadLocal<Context> contexts = new ThreadLocal<Context>();
+	
+	private RunnerScope(String name) {
+		this.name = name;
+	}
+	
+	/**
+	 * @return the context open in the thread, null
+	 * when the thread is out of the scope.
+	 */
+	Context current() {
+		return contexts.get();
+	}
+	
+	/**
+	 * Opens the context in the thread.
+	 * @return the context open before, to
+	 * restore when the context is exited.
+	 */
+	Context enter(Context context) {
+		Context previous = contexts.get();
+		contexts.set(context);
+		return previous;
+	}
+	
+	/**
+	 * Restores the context open before
+	 * the current one in the thread.
+	 */
+	void exit(Context previous) {
+		if (previous == null) {
+			contexts.remove();
+		} else {
+			contexts.set(previous);
+		}
+	}
+	
+	@Override
+	public <T> Provider<T> scope(final Key<T> key, final Provider<T> unscoped) {
+		return new Provider<T>() {
+			@Override
+			public T get() {
+				Context context = contexts.get();
+				if (context == null) {
+					throw new OutOfScopeException("Cannot access " + key + " outside of the @" + name + " scope");
+				}
+				return context.get(key, unscoped);
+			}
+			
+			@Override
+			public String toString() {
+				return unscoped + "[" + RunnerScope.this + "]";
+			}
+		};
+	}
+	
+	@Override
+	public String toString() {
+		return "@" + name;
+	}
+	
+	/**
+	 * The instances of a test, of a class or of a story,
+	 * created on request. Closing the context closes the
+	 * {@link Closeable} instances in the reverse order of
+	 * creation. The lock is not a monitor because the
+	 * instances are created and closed holding it, and
+	 * a virtual thread would stay pinned to its carrier.
+	 */
+	static final class Context implements Closeable {
+		
+		private static final Object NULL = new Object();
+		
+		private final Map<Key<?>, Object> instances = new HashMap<Key<?>, Object>();
+		private final List<Closeable> closeables = new ArrayList<Closeable>();
+		private final ReentrantLock lock = new ReentrantLock();
+		private boolean closed;
+		
+		@SuppressWarnings("unchecked")
+		<T> T get(Key<T> key, Provider<T> unscoped) {
+			lock.lock();
+			try {
+				if (closed) {
+					throw new OutOfScopeException("Cannot access " + key + " after its scope was closed");
+				}
+				Object instance = instances.get(key);
+				if (instance == null) {
+					T created = unscoped.get();
+					instances.put(key, created == null ? NULL : created);
+					if (created instanceof Closeable) {
+						closeables.add((Closeable) created);
+					}
+					return created;
+				}
+				return instance == NULL ? null : (T) instance;
+			} finally {
+				lock.unlock();
+			}
+		}
+		
+		@Override
+		public void close() {
+			lock.lock();
+			try {
+				if (closed) {
+					return;
+				}
+				closed = true;
+				for (int i = closeables.size() - 1; i >= 0; i--) {
+					Closeable closeable = closeables.get(i);
+					try {
+						closeable.close();
+					} catch (IOException e) {
+						logger.warn("Impossible to close " + closeable.getClass().getName(), e);
+					} catch (RuntimeException e) {
+						logger.warn("Impossible to close " + closeable.getClass().getName(), e);
+					}
+				}
+				closeables.clear();
+				instances.clear();
+			} finally {
+				lock.unlock();
+			}
+		}
+		
+	}
+	
+	/**
+	 * {@link com.google.inject.Guice} module binding the scopes,
+	 * added by the runners to every injector without parent.
+	 */
+	static final class Module extends AbstractModule {
+		
+		@Override
+		protected void configure() {
+			bindScope(TestScoped.class, TEST);
+			bindScope(ClassScoped.class, CLASS);
+			bindScope(StoryScoped.class, STORY);
+		}
+		
+	}
+	
+}
@@ -0,0 +1,313 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.runner.Description;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runners.model.InitializationError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Splits the test classes in shards by the key of their
+ * {@link Modules}, so the classes sharing an injector (or its
+ * parent) run in the same shard and every injector is built
+ * in one shard only.</p>
+ * <p>Every shard runs all the test classes with a different
+ * <code>-Dguice.behave.shard=i/n</code>, from 1 to n, and the
+ * {@link TestRunner}s skip the classes of the other shards.
+ * The filter can also be applied to a request with
+ * {@link org.junit.runner.Request#filterWith(Filter)}.</p>
+ * <p>With <code>-Dguice.behave.shard.durations=durations.properties</code>
+ * the keys are balanced across the shards by the durations of
+ * the previous runs, longest first. The keys never run are
+ * assigned by their hash. The file is only read, so all the
+ * shards assign the keys from the same snapshot: the durations
+ * of the run are merged in the separate file set with
+ * <code>-Dguice.behave.shard.durations.output</code>, which can
+ * become the snapshot of the next runs.</p>
+ * @author alessandro.simi@gmail.com
+ */
+public class ShardFilter extends Filter {
+
+	private static final Logger logger = LoggerFactory.getLogger(ShardFilter.class);
+	
+	/**
+	 * System property with the shard to run, <code>i/n</code>.
+	 */
+	public final static String SHARD = "guice.behave.shard";
+	
+	/**
+	 * System property with the file of the durations
+	 * assigning the keys to the shards.
+	 */
+	public final static String DURATIONS = "guice.behave.shard.durations";
+	
+	/**
+	 * System property with the file where the durations
+	 * of the run are merged.
+	 */
+	public final static String DURATIONS_OUTPUT = "guice.behave.shard.durations.output";
+	
+	private final int shard;
+	private final int shards;
+	private final Map<String, Integer> assignments = new HashMap<String, Integer>();
+	
+	/**
+	 * @param shard the shard to run, from 1 to the shards.
+	 * @param shards the number of shards.
+	 * @param durations the durations of the keys.
+	 */
+	public ShardFilter(int shard, int shards, Map<String, Long> durations) {
+		if (shards < 1 || shard < 1 || shard > shards) {
+			throw new IllegalArgumentException("The shard " + shard + "/" + shards + " is not valid.");
+		}
+		this.shard = shard;
+		this.shards = shards;
+		assign(durations);
+	}
+	
+	/**
+	 * Assigns the longest keys first to the shard with
+	 * the shortest total duration.
+	 */
+	private void assign(Map<String, Long> durations) {
+		List<Map.Entry<String, Long>> entries = new ArrayList<Map.Entry<String, Long>>(durations.entrySet());
+		Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+			@Override
+			public int compare(Map.Entry<String, Long> o1, Map.Entry<String, Long> o2) {
+				int compare = o2.getValue().compareTo(o1.getValue());
+				return compare != 0 ? compare : o1.getKey().compareTo(o2.getKey());
+			}
+		});
+		long[] loads = new long[shards];
+		for (Map.Entry<String, Long> entry : entries) {
+			int lightest = 0;
+			for (int i = 1; i < shards; i++) {
+				if (loads[i] < loads[lightest]) {
+					lightest = i;
+				}
+			}
+			loads[lightest] += entry.getValue();
+			assignments.put(entry.getKey(), lightest + 1);
+		}
+	}
+	
+	/**
+	 * @return the shard of the key, from 1 to the shards.
+	 */
+	int getShard(String key) {
+		String rootKey = rootKey(key);
+		Integer assigned = assignments.get(rootKey);
+		return assigned != null ? assigned : (rootKey.hashCode() & Integer.MAX_VALUE) % shards + 1;
+	}
+	
+	/**
+	 * @return true if the classes with the key run in the shard.
+	 */
+	boolean shouldRun(String key) {
+		return getShard(key) == shard;
+	}
+	
+	/**
+	 * Keeps the suites, so their classes are filtered one by
+	 * one, and decides the tests by the key of their class.
+	 */
+	@Override
+	public boolean shouldRun(Description description) {
+		Class<?> testClass = description.getTestClass();
+		if (description.isSuite() || testClass == null) {
+			return true;
+		} else if (testClass.isAnnotationPresent(Modules.class)) {
+			try {
+				return shouldRun(TestRunner.getKey(TestRunner.getModulesAnnotation(testClass)));
+			} catch (InitializationError e) {
+				return true;
+			}
+		}
+		return shouldRun(testClass.getName());
+	}
+
+	@Override
+	public String describe() {
+		return "shard " + shard + "/" + shards;
+	}
+	
+	/**
+	 * @return the key of the parent injector when
+	 * the key has one, the key otherwise.
+	 */
+	static String rootKey(String key) {
+		int index = key.indexOf(TestRunner.PARENT_SEPARATOR);
+		return index < 0 ? key : key.substring(0, index);
+	}
+	
+	private static String property;
+	private static ShardFilter current;
+	
+	/**
+	 * @return the filter of the shard in the system
+	 * properties, null when no shard is set.
+	 * @throws IllegalArgumentException if the shard is not valid.
+	 */
+	static synchronized ShardFilter fromSystemProperties() {
+		String value = System.getProperty(SHARD);
+		if (value == null || value.trim().isEmpty()) {
+			return null;
+		} else if (!value.equals(property)) {
+			String[] parts = value.trim().split("/");
+			try {
+				if (parts.length != 2) {
+					throw new NumberFormatException(value);
+				}
+				current = new ShardFilter(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()), readDurations());
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("The shard " + value + " is not valid, expected i/n.");
+			}
+			property = value;
+		}
+		return current;
+	}
+	
+	private static Map<String, Long> readDurations() {
+		Map<String, Long> durations = new HashMap<String, Long>();
+		String file = System.getProperty(DURATIONS);
+		if (file != null && new File(file).exists()) {
+			try {
+				Properties properties = new Properties();
+				InputStream input = new FileInputStream(file);
+				try {
+					properties.load(input);
+				} finally {
+					input.close();
+				}
+				for (String key : properties.stringPropertyNames()) {
+					try {
+						durations.put(key, Long.parseLong(properties.getProperty(key)));
+					} catch (NumberFormatException e) {
+						logger.warn("Invalid duration of " + key + " in " + file);
+					}
+				}
+			} catch (IOException e) {
+				logger.warn("Impossible to read the durations in " + file, e);
+			}
+		}
+		return durations;
+	}
+	
+	private static final Durations measured = new Durations();
+	private static boolean hooked;
+	
+	/**
+	 * Records the duration of a test class, merged in the
+	 * output file of the durations when the JVM exits.
+	 */
+	static void record(String key, long nanos) {
+		final String file = System.getProperty(DURATIONS_OUTPUT);
+		if (file == null || file.trim().isEmpty()) {
+			return;
+		}
+		measured.add(key, nanos);
+		synchronized (measured) {
+			if (!hooked) {
+				hooked = true;
+				Runtime.getRuntime().addShutdownHook(new Thread("shard-durations") {
+					@Override
+					public void run() {
+						measured.write(new File(file));
+					}
+				});
+			}
+		}
+	}
+	
+	/**
+	 * The durations of the keys measured by the run.
+	 */
+	static class Durations {
+		
+		private final ConcurrentMap<String, AtomicLong> durations = new ConcurrentHashMap<String, AtomicLong>();
+		
+		/**
+		 * Adds the duration to the total of the root key.
+		 */
+		void add(String key, long nanos) {
+			String rootKey = rootKey(key);
+			AtomicLong total = durations.get(rootKey);
+			if (total == null) {
+				AtomicLong existing = durations.putIfAbsent(rootKey, total = new AtomicLong());
+				if (existing != null) {
+					total = existing;
+				}
+			}
+			total.addAndGet(nanos);
+		}
+		
+		/**
+		 * Merges the durations in the file, locked
+		 * against the other shards writing it.
+		 */
+		void write(File file) {
+			try {
+				RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+				try {
+					FileChannel channel = randomAccessFile.getChannel();
+					FileLock lock = channel.lock();
+					try {
+						Properties properties = new Properties();
+						properties.load(Channels.newInputStream(channel));
+						for (Map.Entry<String, AtomicLong> entry : durations.entrySet()) {
+							properties.setProperty(entry.getKey(), String.valueOf(entry.getValue().get() / 1000000));
+						}
+						channel.truncate(0);
+						channel.position(0);
+						OutputStream output = Channels.newOutputStream(channel);
+						properties.store(output, "Durations in milliseconds of the @Modules keys");
+						output.flush();
+					} finally {
+						lock.release();
+					}
+				} finally {
+					randomAccessFile.close();
+				}
+			} catch (IOException e) {
+				logger.error("Impossible to write the durations in " + file, e);
+			}
+		}
+		
+	}
+	
+}
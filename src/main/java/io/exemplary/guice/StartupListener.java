@@ -0,0 +1,65 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+/**
+ * <p>Listens the time spent by the runners to start the
+ * test classes, phase by phase, to find out why a suite is
+ * slow to start.</p>
+ * <pre>
+ * TestRunner.addStartupListener(new StartupListener() {
+ *   public void onPhase(Class&lt;?&gt; testClass, String key, Phase phase, long nanos) {
+ *     ...
+ *   }
+ * });</pre>
+ * <p>The listeners are notified by the threads running the
+ * tests, also concurrently, so they must be thread safe.</p>
+ * <p>The system property {@code guice.behave.startup.summary}
+ * with the path of a file writes there a JSON summary of the
+ * phases when the JVM exits.</p>
+ * @author alessandro.simi@gmail.com
+ */
+public interface StartupListener {
+
+	/**
+	 * The phases of the start of a test class.
+	 */
+	enum Phase {
+		/** Instantiation of the modules listed in {@link Modules}. */
+		MODULES,
+		/** Creation of the injector by Guice. */
+		INJECTOR,
+		/** Injector found in the cache, possibly waiting the build in progress. */
+		CACHE_HIT,
+		/** Injector not found in the cache and built, including the modules and the injector phases. */
+		CACHE_MISS,
+		/** Creation of the {@link TestInterceptor}s. */
+		INTERCEPTORS,
+		/** Invocation of {@link TestInterceptor#beforeClassCreation(Class)}. */
+		BEFORE_CLASS_CREATION,
+		/** Creation of a test instance, once for every test. */
+		TEST_CREATION
+	}
+	
+	/**
+	 * @param testClass the test class.
+	 * @param key the modules key of the test class, or of its parents.
+	 * @param phase the phase ended.
+	 * @param nanos the duration of the phase in nanoseconds.
+	 */
+	void onPhase(Class<?> testClass, String key, Phase phase, long nanos);
+	
+}
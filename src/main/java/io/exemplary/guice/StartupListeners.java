@@ -0,0 +1,70 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * <p>The {@link StartupListener}s registered through
+ * the {@link TestRunner}.</p>
+ * <p>The {@link StartupSummary} is registered from the
+ * beginning when the system property asks for it.</p>
+ * @author alessandro.simi@gmail.com
+ */
+final class StartupListeners {
+
+	/**
+	 * System property with the path of the JSON
+	 * summary written when the JVM exits.
+	 */
+	final static String SUMMARY = "guice.behave.startup.summary";
+	
+	private final static List<StartupListener> listeners = new CopyOnWriteArrayList<StartupListener>();
+	
+	static {
+		String summary = System.getProperty(SUMMARY);
+		if (summary != null && !summary.trim().isEmpty()) {
+			add(new StartupSummary(new File(summary.trim())).writeOnExit());
+		}
+	}
+	
+	private StartupListeners() {}
+	
+	static void add(StartupListener listener) {
+		listeners.add(listener);
+	}
+	
+	static void remove(StartupListener listener) {
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * Notifies the listeners the phase started at the
+	 * given {@link System#nanoTime()} is ended.
+	 */
+	static void fire(Class<?> testClass, String key, StartupListener.Phase phase, long start) {
+		if (listeners.isEmpty()) {
+			return;
+		}
+		long nanos = System.nanoTime() - start;
+		for (StartupListener listener : listeners) {
+			listener.onPhase(testClass, key, phase, nanos);
+		}
+	}
+	
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Sums the duration of the start phases by test class and
+ * in total, and writes them as JSON. The key of a class is
+ * the key of its injector, not of the parent one.</p>
+ * <pre>
+ * {"totals":{"CACHE_MISS":{"count":1,"nanos":1200},...},
+ *  "classes":[{"class":"MyTest","key":"[MyModule]","phases":{...}},...]}</pre>
+ * @author alessandro.simi@gmail.com
+ */
+final class StartupSummary implements StartupListener {
+
+	private static final Logger logger = LoggerFactory.getLogger(StartupSummary.class);
+	
+	private final File file;
+	private final Phases totals = new Phases(null);
+	private final Map<Class<?>, Phases> classes = new LinkedHashMap<Class<?>, Phases>();
+	
+	StartupSummary(File file) {
+		this.file = file;
+	}
+	
+	@Override
+	public synchronized void onPhase(Class<?> testClass, String key, Phase phase, long nanos) {
+		totals.add(phase, nanos);
+		Phases phases = classes.get(testClass);
+		if (phases == null) {
+			phases = new Phases(key);
+			classes.put(testClass, phases);
+		}
+		if (phase == Phase.CACHE_HIT || phase == Phase.CACHE_MISS) {
+			phases.key = key;
+		}
+		phases.add(phase, nanos);
+	}
+	
+	/**
+	 * Writes the summary when the JVM exits.
+	 */
+	StartupSummary writeOnExit() {
+		Runtime.getRuntime().addShutdownHook(new Thread("startup-summary") {
+			@Override
+			public void run() {
+				write();
+			}
+		});
+		return this;
+	}
+	
+	void write() {
+		try {
+			Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+			try {
+				writer.write(toJson());
+			} finally {
+				writer.close();
+			}
+		} catch (IOException e) {
+			logger.error("Impossible to write the startup summary in " + file, e);
+		}
+	}
+	
+	synchronized String toJson() {
+		StringBuilder json = new StringBuilder("{\"totals\":");
+		totals.toJson(json);
+		json.append(",\"classes\":[");
+		boolean first = true;
+		for (Map.Entry<Class<?>, Phases> entry : classes.entrySet()) {
+			if (!first) {
+				json.append(',');
+			}
+			first = false;
+			json.append("{\"class\":");
+			string(json, entry.getKey().getName());
+			json.append(",\"key\":");
+			string(json, entry.getValue().key);
+			json.append(",\"phases\":");
+			entry.getValue().toJson(json);
+			json.append('}');
+		}
+		return json.append("]}").toString();
+	}
+	
+	private static void string(StringBuilder json, String value) {
+		json.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				json.append('\\').append(c);
+			} else if (c < ' ') {
+				json.append(String.format("\\u%04x", (int) c));
+			} else {
+				json.append(c);
+			}
+		}
+		json.append('"');
+	}
+	
+	private static class Phases {
+		
+		private String key;
+		private final Map<Phase, long[]> phases = new EnumMap<Phase, long[]>(Phase.class);
+		
+		Phases(String key) {
+			this.key = key;
+		}
+		
+		void add(Phase phase, long nanos) {
+			long[] counters = phases.get(phase);
+			if (counters == null) {
+				counters = new long[2];
+				phases.put(phase, counters);
+			}
+			counters[0]++;
+			counters[1] += nanos;
+		}
+		
+		void toJson(StringBuilder json) {
+			json.append('{');
+			boolean first = true;
+			for (Map.Entry<Phase, long[]> entry : phases.entrySet()) {
+				if (!first) {
+					json.append(',');
+				}
+				first = false;
+				json.append('"').append(entry.getKey()).append("\":{\"count\":").append(entry.getValue()[0])
+					.append(",\"nanos\":").append(entry.getValue()[1]).append('}');
+			}
+			json.append('}');
+		}
+		
+	}
+	
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>The {@link Histogram}s of the durations of the stories and
+ * of the steps measured by the {@link StoryRunner}, one for every
+ * method, so the stories can double as latency measurements of
+ * the system under test.</p>
+ * <pre>
+ * {@literal @}RunWith(StoryRunner.class) {@literal @}Modules(MyModule.class)
+ * public class MyStoryTest {
+ *   {@literal @}Inject private StepLatencies latencies;
+ *   ...
+ * }</pre>
+ * <p>The registry is shared by the test classes with the same
+ * modules. The durations of the steps of a class are logged
+ * under the {@code story.latencies} logger after its stories
+ * have run.</p>
+ * @author alessandro.simi@gmail.com
+ */
+public final class StepLatencies {
+
+	private static final Logger logger = LoggerFactory.getLogger("story.latencies");
+	
+	private final ConcurrentMap<Method, Histogram> histograms = new ConcurrentHashMap<Method, Histogram>();
+	
+	StepLatencies() {}
+	
+	void record(Method method, long nanos) {
+		Histogram histogram = histograms.get(method);
+		if (histogram == null) {
+			histogram = new Histogram();
+			Histogram existing = histograms.putIfAbsent(method, histogram);
+			if (existing != null) {
+				histogram = existing;
+			}
+		}
+		histogram.record(nanos);
+	}
+	
+	/**
+	 * @return the histogram of the step or of the
+	 * story method, null if it never ended.
+	 */
+	public Histogram get(Method method) {
+		return histograms.get(method);
+	}
+	
+	/**
+	 * @return the histograms of all the steps and stories.
+	 */
+	public Map<Method, Histogram> getHistograms() {
+		return Collections.unmodifiableMap(histograms);
+	}
+	
+	/**
+	 * @return the histograms of the steps and stories
+	 * declared by the class, ordered by name.
+	 */
+	public Map<Method, Histogram> getHistograms(Class<?> declaringClass) {
+		Map<String, Method> methods = new TreeMap<String, Method>();
+		for (Method method : histograms.keySet()) {
+			if (method.getDeclaringClass().equals(declaringClass)) {
+				methods.put(method.toGenericString(), method);
+			}
+		}
+		Map<Method, Histogram> result = new LinkedHashMap<Method, Histogram>();
+		for (Method method : methods.values()) {
+			result.put(method, histograms.get(method));
+		}
+		return result;
+	}
+	
+	/**
+	 * Logs the histograms of the steps and stories of the class.
+	 */
+	void log(Class<?> declaringClass) {
+		if (logger.isInfoEnabled()) {
+			for (Map.Entry<Method, Histogram> entry : getHistograms(declaringClass).entrySet()) {
+				logger.info(declaringClass.getSimpleName() + "." + entry.getKey().getName() + " " + entry.getValue());
+			}
+		}
+	}
+	
+}
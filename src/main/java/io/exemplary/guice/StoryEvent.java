@@ -0,0 +1,202 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.lang.reflect.Method;
+
+/**
+ * <p>One of the four events of a story with the method
+ * and the arguments that generated it.</p>
+ * <p>The ends of the stories and of the steps failed are
+ * only notified to the {@link StoryEventPrinter}s, never
+ * to the {@link AbstractStoryModule.StoryPrinter}s.</p>
+ * <p>The class name and the message are converted only
+ * the first time they are requested, so the conversion
+ * can happen on a different thread or never.</p>
+ * @author alessandro.simi@gmail.com
+ */
+public final class StoryEvent {
+
+	public static enum Type {
+		STORY_BEGINS, STEP_BEGINS, STEP_ENDS, STORY_ENDS
+	}
+	
+	private final Type type;
+	private final Method method;
+	private final Object[] arguments;
+	private final AbstractStoryModule.StoryConverter converter;
+	private final Thread thread;
+	private final long time;
+	private final long duration;
+	private final Throwable failure;
+	
+	private final boolean formatted;
+	
+	private String className;
+	private String message;
+	
+	StoryEvent(Type type, Method method, Object[] arguments, AbstractStoryModule.StoryConverter converter) {
+		this(type, method, arguments, converter, -1, null);
+	}
+	
+	/**
+	 * Creates an event with the duration of the story
+	 * or of the step just ended and its failure, null
+	 * when it succeeded.
+	 */
+	StoryEvent(Type type, Method method, Object[] arguments, AbstractStoryModule.StoryConverter converter, long duration, Throwable failure) {
+		this(type, method, arguments, converter, duration, failure, Thread.currentThread(), System.currentTimeMillis(), false);
+	}
+	
+	private StoryEvent(Type type, Method method, Object[] arguments, AbstractStoryModule.StoryConverter converter, long duration, Throwable failure, Thread thread, long time, boolean formatted) {
+		this.type = type;
+		this.method = method;
+		this.arguments = arguments;
+		this.converter = converter;
+		this.thread = thread;
+		this.time = time;
+		this.duration = duration;
+		this.failure = failure;
+		this.formatted = formatted;
+	}
+	
+	/**
+	 * Creates an event with the class name
+	 * and the message already converted.
+	 */
+	StoryEvent(Type type, String className, String message) {
+		this(type, null, null, null);
+		this.className = className;
+		this.message = message;
+	}
+	
+	public Type getType() {
+		return type;
+	}
+	
+	public Method getMethod() {
+		return method;
+	}
+	
+	/**
+	 * @return the arguments of the method, already
+	 * formatted in the snapshots of the events.
+	 */
+	public Object[] getArguments() {
+		return arguments;
+	}
+	
+	/**
+	 * @return the thread running the step.
+	 */
+	public Thread getThread() {
+		return thread;
+	}
+	
+	/**
+	 * @return the time of the event in milliseconds.
+	 */
+	public long getTime() {
+		return time;
+	}
+	
+	/**
+	 * @return the duration in nanoseconds of the story or of
+	 * the step ended, -1 when the event is not an end.
+	 */
+	public long getDuration() {
+		return duration;
+	}
+	
+	/**
+	 * @return the error thrown by the story or by the
+	 * step ended, null when it succeeded.
+	 */
+	public Throwable getFailure() {
+		return failure;
+	}
+	
+	public String getClassName() {
+		if (className == null) {
+			className = converter.convertClass(method.getDeclaringClass());
+		}
+		return className;
+	}
+	
+	public String getMessage() {
+		if (message == null) {
+			if (formatted) {
+				message = ((AbstractStoryModule.StoryConverter.Default) converter).convertFormatted(method, (String[]) arguments);
+			} else {
+				message = converter.convertMethod(method, arguments);
+			}
+		}
+		return message;
+	}
+	
+	/**
+	 * <p>Takes a snapshot of the arguments, the event can
+	 * then be printed by another thread while the test
+	 * changes them.</p>
+	 * <p>The arguments are formatted when the default
+	 * converter converts the message later, with the
+	 * arguments of the event being the ones formatted.
+	 * The message of the other converters is converted
+	 * immediately.</p>
+	 */
+	StoryEvent snapshot() {
+		if (method == null || formatted || arguments.length == 0) {
+			return this;
+		} else if (converter.getClass() == AbstractStoryModule.StoryConverter.Default.class) {
+			String[] formatted = MethodTemplate.format(method, arguments);
+			return new StoryEvent(type, method, formatted, converter, duration, failure, thread, time, true);
+		} else {
+			getClassName();
+			getMessage();
+			return this;
+		}
+	}
+	
+	/**
+	 * Prints the event with the method of the printer
+	 * associated to the type of the event, or hands it
+	 * to the printer of the events.
+	 */
+	void print(AbstractStoryModule.StoryPrinter printer) {
+		if (printer instanceof StoryEventPrinter) {
+			((StoryEventPrinter) printer).onEvent(this);
+		} else {
+			printMessage(printer);
+		}
+	}
+	
+	/**
+	 * Prints the event converted with the method of the
+	 * printer associated to the type of the event.
+	 */
+	void printMessage(AbstractStoryModule.StoryPrinter printer) {
+		if (failure != null) {
+			return;
+		}
+		switch (type) {
+			case STORY_BEGINS: printer.onStoryBegins(getClassName(), getMessage()); break;
+			case STEP_BEGINS: printer.onStepBegins(getClassName(), getMessage()); break;
+			case STEP_ENDS: printer.onStepEnds(getClassName(), getMessage()); break;
+			case STORY_ENDS: printer.onStoryEnds(getClassName(), getMessage()); break;
+		}
+	}
+	
+}
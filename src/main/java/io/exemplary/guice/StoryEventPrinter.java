@@ -0,0 +1,38 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+/**
+ * <p>A {@link AbstractStoryModule.StoryPrinter} receiving the
+ * events not converted yet: the {@link StoryInterceptor} calls
+ * {@link #onEvent(StoryEvent)} instead of the methods with the
+ * class name and the message.</p>
+ * <p>The events are created only for the types the printer
+ * consumes and the class name and the message are converted
+ * only when the printer requests them.</p>
+ * @author alessandro.simi@gmail.com
+ */
+public interface StoryEventPrinter extends AbstractStoryModule.StoryPrinter {
+
+	/**
+	 * @return true if the printer prints the events of the
+	 * type, the other events are never created.
+	 */
+	boolean consumes(StoryEvent.Type type);
+	
+	void onEvent(StoryEvent event);
+	
+}
@@ -16,9 +16,12 @@
 package io.exemplary.guice;
 
 import static com.google.inject.matcher.Matchers.annotatedWith;
-import static com.google.inject.matcher.Matchers.any;
 
+import java.io.Flushable;
+import java.io.IOException;
 import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
@@ -28,6 +31,8 @@ import org.junit.runner.RunWith;
 import com.google.inject.ConfigurationException;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
+import com.google.inject.matcher.AbstractMatcher;
+import com.google.inject.matcher.Matchers;
 
 /**
  * <p>Intercept methods annotated with {@link Story} and
@@ -36,33 +41,60 @@ import com.google.inject.Injector;
  * <p>It also implements the logic for expected Exceptions
  * when the annotation {@link Expected} is present with the
  * same logic of {@link Test} annotation.</p>
+ * <p>The duration of every story and step ended is recorded
+ * in the {@link StepLatencies}.</p>
+ * <p>The classes declaring or inheriting methods annotated with
+ * {@link Step} have only their stories and steps intercepted.</p>
+ * <p>The stories and the steps with a {@link Budget} are
+ * watched by the {@link StoryWatchdog}.</p>
+ * <p>Every story runs in its own {@link StoryScoped} scope,
+ * closed when the story ends.</p>
  * @author alessandro.simi
  */
 class StoryInterceptor implements MethodInterceptor {
 
 	@Inject private Injector injector;
+	@Inject private StepLatencies latencies;
 	
-	private AbstractStoryModule.StoryPrinter printer;
+	private volatile AbstractStoryModule.StoryPrinter printer;
 	
+	/**
+	 * The printer and the converter are lazily created and
+	 * can be requested concurrently by the parallel tests.
+	 */
 	private AbstractStoryModule.StoryPrinter printer() {
+		AbstractStoryModule.StoryPrinter printer = this.printer;
 		if (printer == null) {
-			try {
-				printer = injector.getInstance(AbstractStoryModule.StoryPrinter.class);
-			} catch (ConfigurationException e) {
-				printer = injector.getInstance(AbstractStoryModule.StoryPrinter.Default.class);
+			synchronized (this) {
+				printer = this.printer;
+				if (printer == null) {
+					try {
+						printer = injector.getInstance(AbstractStoryModule.StoryPrinter.class);
+					} catch (ConfigurationException e) {
+						printer = injector.getInstance(AbstractStoryModule.StoryPrinter.Default.class);
+					}
+					this.printer = printer;
+				}
 			}
 		}
 		return printer;
 	}
 	
-	private AbstractStoryModule.StoryConverter converter;
+	private volatile AbstractStoryModule.StoryConverter converter;
 	
 	private AbstractStoryModule.StoryConverter converter() {
+		AbstractStoryModule.StoryConverter converter = this.converter;
 		if (converter == null) {
-			try {
-				converter = injector.getInstance(AbstractStoryModule.StoryConverter.class);
-			} catch (ConfigurationException e) {
-				converter = injector.getInstance(AbstractStoryModule.StoryConverter.Default.class);
+			synchronized (this) {
+				converter = this.converter;
+				if (converter == null) {
+					try {
+						converter = injector.getInstance(AbstractStoryModule.StoryConverter.class);
+					} catch (ConfigurationException e) {
+						converter = injector.getInstance(AbstractStoryModule.StoryConverter.Default.class);
+					}
+					this.converter = converter;
+				}
 			}
 		}
 		return converter;
@@ -70,40 +102,101 @@ class StoryInterceptor implements MethodInterceptor {
 
 	@Override
 	public Object invoke(MethodInvocation invocation) throws Throwable {
-		if (!isFinalizeMethod(invocation)) {
-			Story story = invocation.getMethod().getAnnotation(Story.class);
-			if (story != null) {
-				return invokeStory(invocation);
+		MethodMetadata metadata = MethodMetadata.of(invocation.getMethod());
+		if (!metadata.isFinalize()) {
+			if (metadata.getStory() != null) {
+				return invokeStory(invocation, metadata);
 			} else {
-				return invokeStep(invocation);
+				return invokeStep(invocation, metadata);
 			}
 		} else {
 			return invocation.proceed();
 		}
 	}
 
-	private final static String FINALIZE = "finalize";
-
-	private boolean isFinalizeMethod(MethodInvocation invocation) {
-		return FINALIZE.equalsIgnoreCase(invocation.getMethod().getName());
-	}
+	/**
+	 * The watch of the story running in the thread,
+	 * recording its slowest step.
+	 */
+	private final ThreadLocal<StoryWatchdog.Watch> stories = new ThreadLocal<StoryWatchdog.Watch>();
 	
 	/**
 	 * Invocation of the main story method.
 	 */
-	private Object invokeStory(MethodInvocation invocation) throws Throwable {
-		printer().onStoryBegins(classToString(invocation), methodToString(invocation));
-		Object object = invocation.proceed();
-		printer().onStoryEnds(classToString(invocation), methodToString(invocation));
+	private Object invokeStory(MethodInvocation invocation, MethodMetadata metadata) throws Throwable {
+		print(StoryEvent.Type.STORY_BEGINS, invocation, -1, null);
+		StoryWatchdog.Watch watch = metadata.getBudget() != null ? StoryWatchdog.watch(metadata.getBudget()) : null;
+		StoryWatchdog.Watch outer = stories.get();
+		stories.set(watch);
+		RunnerScope.Context context = new RunnerScope.Context();
+		RunnerScope.Context previous = RunnerScope.STORY.enter(context);
+		long start = System.nanoTime();
+		Object object;
+		try {
+			object = invocation.proceed();
+		} catch (Throwable throwable) {
+			throw storyEnds(invocation, watch, System.nanoTime() - start, throwable);
+		} finally {
+			stories.set(outer);
+			context.close();
+			RunnerScope.STORY.exit(previous);
+		}
+		long duration = System.nanoTime() - start;
+		latencies.record(invocation.getMethod(), duration);
+		Throwable failure = storyEnds(invocation, watch, duration, null);
+		if (failure != null) {
+			throw failure;
+		}
 		return object;
 	}
 	
+	private Throwable storyEnds(MethodInvocation invocation, StoryWatchdog.Watch watch, long duration, Throwable failure) {
+		if (watch != null) {
+			failure = watch.stop(methodToString(invocation), failure);
+		}
+		print(StoryEvent.Type.STORY_ENDS, invocation, duration, failure);
+		return failure;
+	}
+	
 	/**
 	 * Invocation of steps methods.
 	 */
-	private Object invokeStep(MethodInvocation invocation) throws Throwable {
-		printer().onStepBegins(classToString(invocation), methodToString(invocation));
-		Expected expected = invocation.getMethod().getAnnotation(Expected.class);
+	private Object invokeStep(MethodInvocation invocation, MethodMetadata metadata) throws Throwable {
+		print(StoryEvent.Type.STEP_BEGINS, invocation, -1, null);
+		StoryWatchdog.Watch watch = metadata.getBudget() != null ? StoryWatchdog.watch(metadata.getBudget()) : null;
+		long start = System.nanoTime();
+		Object result;
+		try {
+			result = proceedStep(invocation, metadata);
+		} catch (Throwable throwable) {
+			throw stepEnds(invocation, watch, System.nanoTime() - start, throwable);
+		}
+		long duration = System.nanoTime() - start;
+		latencies.record(invocation.getMethod(), duration);
+		Throwable failure = stepEnds(invocation, watch, duration, null);
+		if (failure != null) {
+			throw failure;
+		}
+		return result;
+	}
+	
+	private Throwable stepEnds(MethodInvocation invocation, StoryWatchdog.Watch watch, long duration, Throwable failure) {
+		StoryWatchdog.Watch story = stories.get();
+		if (watch != null || story != null) {
+			String step = methodToString(invocation);
+			if (watch != null) {
+				failure = watch.stop("Step \"" + step + "\"", failure);
+			}
+			if (story != null) {
+				story.step(step, duration);
+			}
+		}
+		print(StoryEvent.Type.STEP_ENDS, invocation, duration, failure);
+		return failure;
+	}
+	
+	private Object proceedStep(MethodInvocation invocation, MethodMetadata metadata) throws Throwable {
+		Expected expected = metadata.getExpected();
 		Object result = null;
 		if (expected == null) {
 			result = invocation.proceed();
@@ -113,22 +206,97 @@ class StoryInterceptor implements MethodInterceptor {
 				result = invocation.proceed();
 				succeed = true;
 			} catch (Throwable throwable) {
-				verifyException(expected, throwable);
+				verifyException(metadata, throwable);
 			}
 			if (succeed) {
 				throw new Exception("Expected exception " + expected.value().getName());
 			}
 		}
-		printer().onStepEnds(classToString(invocation), methodToString(invocation));
 		return result;
 	}
 	
-	private void verifyException(Expected expected, Throwable actual) throws Exception {
-		String expectedMessage = expected.message();
-		String actualMessage = actual.getMessage();
+	/**
+	 * The threads not printing the stories, 
+	 * used by the iterations of the benchmarks.
+	 */
+	private final ThreadLocal<Boolean> muted = new ThreadLocal<Boolean>();
+	
+	/**
+	 * Stops or restarts printing the stories 
+	 * and the steps running in the thread.
+	 */
+	void mute(boolean mute) {
+		if (mute) {
+			muted.set(Boolean.TRUE);
+		} else {
+			muted.remove();
+		}
+	}
+	
+	/**
+	 * Hands the event to the printer, without converting
+	 * it when the printer receives the events directly and
+	 * without creating it when the printer doesn't consume it.
+	 * The failures are notified only to the printers of
+	 * the events. The arguments are not copied because the
+	 * proxy creates their array for every call.
+	 */
+	private void print(StoryEvent.Type type, MethodInvocation invocation, long duration, Throwable failure) {
+		if (muted.get() != null) {
+			return;
+		}
+		AbstractStoryModule.StoryPrinter printer = printer();
+		if (printer instanceof StoryEventPrinter) {
+			StoryEventPrinter eventPrinter = (StoryEventPrinter) printer;
+			if (eventPrinter.consumes(type)) {
+				eventPrinter.onEvent(new StoryEvent(type, invocation.getMethod(), invocation.getArguments(), converter(), duration, failure));
+			}
+		} else if (failure == null) {
+			switch (type) {
+				case STORY_BEGINS: printer.onStoryBegins(classToString(invocation), methodToString(invocation)); break;
+				case STEP_BEGINS: printer.onStepBegins(classToString(invocation), methodToString(invocation)); break;
+				case STEP_ENDS: printer.onStepEnds(classToString(invocation), methodToString(invocation)); break;
+				case STORY_ENDS: printer.onStoryEnds(classToString(invocation), methodToString(invocation)); break;
+			}
+		}
+	}
+	
+	/**
+	 * Waits the printer to print all the events
+	 * if it prints in background.
+	 */
+	void flush() throws IOException {
+		AbstractStoryModule.StoryPrinter printer = this.printer;
+		if (printer instanceof Flushable) {
+			((Flushable) printer).flush();
+		}
+	}
+	
+	/**
+	 * @return the durations of the stories and of
+	 * the steps intercepted.
+	 */
+	StepLatencies getLatencies() {
+		return latencies;
+	}
+	
+	/**
+	 * Clears the printer and converter instances
+	 * every test run to delegate the singleton
+	 * behave to Guice.
+	 */
+	void clearInstances() {
+		synchronized (this) {
+			printer = null;
+			converter = null;
+		}
+	}
+	
+	private void verifyException(MethodMetadata metadata, Throwable actual) throws Exception {
+		Expected expected = metadata.getExpected();
 		if (!expected.value().isAssignableFrom(actual.getClass()) ) {
             throw new Exception("Unexpected exception, expected<" + expected.value().getName() + "> but was <" + actual.getClass().getName() + ">", actual);
-		} else if (!expectedMessage.isEmpty() && (actualMessage == null || !actualMessage.matches(expectedMessage))) {
+		} else if (!metadata.matchesExpectedMessage(actual.getMessage())) {
             throw new Exception("Unexpected message exception, expected match with <" + expected.message() + "> but was <" + actual.getMessage() + ">", actual);
 		}
 	}
@@ -145,27 +313,77 @@ class StoryInterceptor implements MethodInterceptor {
 	
 	/**
 	 * {@link com.google.inject.Guice} module to bind the {@link StoryInterceptor}.
+	 * The interceptor is bound as well so the runners sharing
+	 * the injector can reach it.
 	 * @author alessandro.simi@gmail.com
 	 */
 	public static class Module extends AbstractStoryModule {
 		
-		private StoryInterceptor interceptor;
-		
 		@Override
 		protected void configureStory() {
-			interceptor = new StoryInterceptor();
-			requestInjection(interceptor);
-			bindInterceptor(annotatedWith(RunWith.class), any(), interceptor);
+			StoryInterceptor interceptor = new StoryInterceptor();
+			bind(StoryInterceptor.class).toInstance(interceptor);
+			bind(StepLatencies.class).toInstance(new StepLatencies());
+			bindInterceptor(new DeclaresSteps().and(annotatedWith(RunWith.class)), new Steps(true), interceptor);
+			bindInterceptor(Matchers.<Class<?>>not(new DeclaresSteps()).and(annotatedWith(RunWith.class)), new Steps(false), interceptor);
+		}
+		
+	}
+	
+	/**
+	 * Matches the classes declaring {@link Step}s, or
+	 * inheriting them from their super classes.
+	 */
+	static class DeclaresSteps extends AbstractMatcher<Class<?>> {
+		
+		private static final ConcurrentMap<Class<?>, Boolean> declaringSteps = new ConcurrentHashMap<Class<?>, Boolean>();
+		
+		@Override
+		public boolean matches(Class<?> clazz) {
+			Boolean result = declaringSteps.get(clazz);
+			if (result == null) {
+				result = false;
+				for (Class<?> current = clazz; current != null && !result; current = current.getSuperclass()) {
+					for (Method method : current.getDeclaredMethods()) {
+						if (method.isAnnotationPresent(Step.class)) {
+							result = true;
+							break;
+						}
+					}
+				}
+				declaringSteps.put(clazz, result);
+			}
+			return result;
 		}
 		
+	}
+	
+	/**
+	 * Matches the stories and the steps of the classes declaring
+	 * {@link Step}s, all the methods of the other classes. The
+	 * methods are matched only when the injector creates the
+	 * class so the ones not matched are plain calls.
+	 */
+	static class Steps extends AbstractMatcher<Method> {
+		
+		private final boolean declared;
+		
 		/**
-		 * Clears the printer and converter instances
-		 * every test run to delegate the singleton
-		 * behave to Guice.
+		 * @param declared true to match only the stories and the
+		 * steps, for the classes {@link DeclaresSteps}.
 		 */
-		void clearInstances() {
-			interceptor.printer = null;
-			interceptor.converter = null;
+		Steps(boolean declared) {
+			this.declared = declared;
+		}
+		
+		@Override
+		public boolean matches(Method method) {
+			if (method.isSynthetic()) {
+				return false;
+			} else if (!declared) {
+				return true;
+			}
+			return method.isAnnotationPresent(Story.class) || method.isAnnotationPresent(Step.class);
 		}
 		
 	}
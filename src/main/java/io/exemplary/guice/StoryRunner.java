@@ -15,13 +15,18 @@
  */
 package io.exemplary.guice;
 
+import java.io.IOException;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunNotifier;
 import org.junit.runners.model.FrameworkMethod;
 import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.Statement;
 
+import com.google.inject.Binding;
+import com.google.inject.Key;
 import com.google.inject.Module;
 
 /** 
@@ -59,11 +64,13 @@ import com.google.inject.Module;
  * is printed can be configured with the {@link AbstractStoryModule.StoryConverter}
  * and {@link AbstractStoryModule.StoryPrinter} interfaces and the
  * {@link AbstractStoryModule}.</p>
+ * <p>The stories annotated with {@link MicroBenchmark} run
+ * many times as benchmarks of the system tested, the ones
+ * annotated with {@link Load} run from many threads and the
+ * ones annotated with {@link ArrivalRate} at a constant rate.</p>
  */  
 public final class StoryRunner extends TestRunner {
 	
-	private static Map<String, StoryInterceptor.Module> storyModules = new ConcurrentHashMap<String, StoryInterceptor.Module>();
-	
 	/** 
 	 * Creates a Runner with Guice modules. 
 	 * @param classToRun the test class to run 
@@ -71,23 +78,152 @@ public final class StoryRunner extends TestRunner {
 	 */  
 	public StoryRunner(final Class<?> classToRun) throws InitializationError {  
 		super(classToRun);
-		Modules annotation = getModulesAnnotation(classToRun);
-		getStoryModule(annotation).clearInstances();
+	}
+	
+	/**
+	 * Creates a Runner that can defer the creation
+	 * of the injector until it runs.
+	 */
+	StoryRunner(final Class<?> classToRun, boolean deferred) throws InitializationError {  
+		super(classToRun, deferred);
+	}
+	
+	private StoryInterceptor storyInterceptor;
+	
+	@Override
+	void initialized() {
+		storyInterceptor = getStoryInterceptor();
+		if (storyInterceptor != null) {
+			storyInterceptor.clearInstances();
+		}
 	}
 
 	@Override
 	List<Module> getModules(Modules annotation) throws InitializationError {
 		List<Module> modules = super.getModules(annotation);
-		modules.add(getStoryModule(annotation));
+		modules.add(new StoryInterceptor.Module());
 		return modules;
 	}
 	
-	private StoryInterceptor.Module getStoryModule(Modules annotation) throws InitializationError {
-		String key = getKey(annotation);
-		if (!storyModules.containsKey(key)) {
-			storyModules.put(key, new StoryInterceptor.Module());
+	/**
+	 * @return the interceptor bound in the injector, null when
+	 * the injector was created by a {@link TestRunner} with the
+	 * same modules.
+	 */
+	private StoryInterceptor getStoryInterceptor() {
+		Binding<StoryInterceptor> binding = getInjector().getExistingBinding(Key.get(StoryInterceptor.class));
+		return binding != null ? binding.getProvider().get() : null;
+	}
+
+	/**
+	 * Logs the durations of the steps of the class and
+	 * waits the printer to print all the events of the class.
+	 */
+	@Override
+	void finished(RunNotifier notifier) {
+		if (storyInterceptor != null) {
+			StepLatencies latencies = storyInterceptor.getLatencies();
+			if (latencies != null) {
+				latencies.log(getTestClass().getJavaClass());
+			}
+			try {
+				storyInterceptor.flush();
+			} catch (IOException e) {
+				notifier.fireTestFailure(new Failure(getDescription(), e));
+			}
+		}
+	}
+
+	@Override
+	protected Statement methodInvoker(FrameworkMethod method, Object test) {
+		MicroBenchmark benchmark = method.getAnnotation(MicroBenchmark.class);
+		if (benchmark != null) {
+			return new MicroBenchmarkStatement(method, test, benchmark);
+		}
+		String name = getTestClass().getJavaClass().getSimpleName() + "." + method.getName();
+		final RunnerScope.Context classContext = RunnerScope.CLASS.current();
+		final RunnerScope.Context testContext = RunnerScope.TEST.current();
+		LoadStatement.Tests tests = new LoadStatement.Tests() {
+			/**
+			 * The instances can be created by the threads of
+			 * the load, in the scopes of the test running.
+			 */
+			@Override
+			public Object create() throws Exception {
+				RunnerScope.Context previousClass = RunnerScope.CLASS.enter(classContext);
+				RunnerScope.Context previousTest = RunnerScope.TEST.enter(testContext);
+				try {
+					return createTest();
+				} finally {
+					RunnerScope.TEST.exit(previousTest);
+					RunnerScope.CLASS.exit(previousClass);
+				}
+			}
+		};
+		Load load = method.getAnnotation(Load.class);
+		if (load != null) {
+			return new LoadStatement(method, test, tests, storyInterceptor, load, name, virtual);
+		}
+		ArrivalRate arrivalRate = method.getAnnotation(ArrivalRate.class);
+		if (arrivalRate != null) {
+			return new ArrivalRateStatement(method, test, tests, storyInterceptor, arrivalRate, name, virtual);
+		}
+		return super.methodInvoker(method, test);
+	}
+	
+	/**
+	 * Runs the warmup and the measured iterations of the
+	 * story, printing only the first one, and verifies
+	 * the threshold of the benchmark.
+	 */
+	private class MicroBenchmarkStatement extends Statement {
+		
+		private final FrameworkMethod method;
+		private final Object test;
+		private final MicroBenchmark benchmark;
+		
+		MicroBenchmarkStatement(FrameworkMethod method, Object test, MicroBenchmark benchmark) {
+			this.method = method;
+			this.test = test;
+			this.benchmark = benchmark;
+		}
+		
+		@Override
+		public void evaluate() throws Throwable {
+			Histogram histogram = new Histogram();
+			long elapsed = 0;
+			try {
+				for (int i = 0; i < benchmark.warmup() + benchmark.iterations(); i++) {
+					if (storyInterceptor != null && i == 1) {
+						storyInterceptor.mute(true);
+					}
+					long start = System.nanoTime();
+					method.invokeExplosively(test);
+					long duration = System.nanoTime() - start;
+					if (i >= benchmark.warmup()) {
+						histogram.record(duration);
+						elapsed += duration;
+					}
+				}
+			} finally {
+				if (storyInterceptor != null) {
+					storyInterceptor.mute(false);
+				}
+			}
+			String name = getTestClass().getJavaClass().getSimpleName() + "." + method.getName();
+			LoadStatement.logger.info(name + " " + histogram + " throughput=" + LoadStatement.throughput(histogram.getCount(), elapsed) + " ops/s");
+			long threshold = benchmark.unit().toNanos(benchmark.threshold());
+			long percentile = histogram.getPercentile(benchmark.percentile());
+			if (threshold > 0 && percentile > threshold) {
+				throw new BudgetExceededError("The p" + format(benchmark.percentile()) + " of " + name + " is " + TimeUnit.NANOSECONDS.toMicros(percentile)
+						+ " us, over its threshold of " + TimeUnit.NANOSECONDS.toMicros(threshold) + " us", null);
+			}
+		}
+		
+		private String format(double percentile) {
+			return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
 		}
-		return storyModules.get(key);
+		
 	}
 
 	@Override
@@ -98,6 +234,7 @@ public final class StoryRunner extends TestRunner {
 	@Override
 	protected final void validateTestMethods(List<Throwable> errors) {
 		validatePublicVoidNoArgMethods(Story.class, false, errors);
+		ArrivalRateStatement.validate(getTestClass().getAnnotatedMethods(Story.class), errors);
 	}
 	
 }
\ No newline at end of file
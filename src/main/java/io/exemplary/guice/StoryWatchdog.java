@@ -0,0 +1,159 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Watches the stories and the steps with a {@link Budget}.
+ * The watchdog thread captures the thread dump when the budget
+ * is exceeded and interrupts the thread at the hard limit, only
+ * if the budget asks for them: the budget itself is verified
+ * by the thread when the story or the step ends.</p>
+ * @author alessandro.simi@gmail.com
+ */
+final class StoryWatchdog {
+
+	private static final int PURGE_RATE = 1024;
+	
+	private static ScheduledThreadPoolExecutor executor;
+	private static final AtomicInteger cancelled = new AtomicInteger();
+	
+	private StoryWatchdog() {}
+	
+	private static synchronized ScheduledThreadPoolExecutor executor() {
+		if (executor == null) {
+			executor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("story-watchdog"));
+		}
+		return executor;
+	}
+	
+	/**
+	 * Starts to watch the current thread.
+	 */
+	static Watch watch(Budget budget) {
+		return new Watch(budget, Thread.currentThread());
+	}
+	
+	static class Watch {
+		
+		private final Budget budget;
+		private final Thread thread;
+		private final long start = System.nanoTime();
+		private final ScheduledFuture<?> dump;
+		private final ScheduledFuture<?> interrupt;
+		
+		private volatile StackTraceElement[] stackTrace;
+		private boolean interrupted;
+		private boolean stopped;
+		
+		private String slowestStep;
+		private long slowestDuration = -1;
+		
+		Watch(Budget budget, Thread thread) {
+			this.budget = budget;
+			this.thread = thread;
+			this.dump = budget.threadDump() ? executor().schedule(new Runnable() {
+				@Override
+				public void run() {
+					stackTrace = Watch.this.thread.getStackTrace();
+				}
+			}, budget.value(), budget.unit()) : null;
+			this.interrupt = budget.hardLimit() > 0 ? executor().schedule(new Runnable() {
+				@Override
+				public void run() {
+					synchronized (Watch.this) {
+						if (!stopped) {
+							interrupted = true;
+							Watch.this.thread.interrupt();
+						}
+					}
+				}
+			}, budget.hardLimit(), budget.unit()) : null;
+		}
+		
+		/**
+		 * Remembers the step if it is the slowest of the story.
+		 */
+		void step(String step, long duration) {
+			if (duration > slowestDuration) {
+				slowestStep = step;
+				slowestDuration = duration;
+			}
+		}
+		
+		/**
+		 * Stops watching the thread.
+		 * @param name the story or the step watched.
+		 * @param failure the failure of the story or of the step.
+		 * @return the failure or the {@link BudgetExceededError}
+		 * if the story or the step ran over its budget.
+		 */
+		Throwable stop(String name, Throwable failure) {
+			long duration = System.nanoTime() - start;
+			boolean interrupted;
+			synchronized (this) {
+				stopped = true;
+				interrupted = this.interrupted;
+			}
+			cancel(dump);
+			cancel(interrupt);
+			if (interrupted) {
+				Thread.interrupted();
+				return new BudgetExceededError(name + " was interrupted after " + millis(duration) + " ms at its hard limit of " + millis(budget.unit().toNanos(budget.hardLimit())) + " ms" + slowestStep(), cause(failure));
+			} else if (duration > budget.unit().toNanos(budget.value())) {
+				return new BudgetExceededError(name + " took " + millis(duration) + " ms, over its budget of " + millis(budget.unit().toNanos(budget.value())) + " ms" + slowestStep(), cause(failure));
+			}
+			return failure;
+		}
+		
+		private String slowestStep() {
+			return slowestStep == null ? "" : ", the slowest step \"" + slowestStep + "\" took " + millis(slowestDuration) + " ms";
+		}
+		
+		/**
+		 * @return the failure or the thread dump
+		 * as the cause of the budget exceeded.
+		 */
+		private Throwable cause(Throwable failure) {
+			if (failure != null) {
+				return failure;
+			}
+			StackTraceElement[] stackTrace = this.stackTrace;
+			if (stackTrace == null) {
+				return null;
+			}
+			Throwable dump = new Throwable("Thread dump of \"" + thread.getName() + "\" when the budget was exceeded");
+			dump.setStackTrace(stackTrace);
+			return dump;
+		}
+		
+		private static void cancel(ScheduledFuture<?> future) {
+			if (future != null && future.cancel(false) && cancelled.incrementAndGet() % PURGE_RATE == 0) {
+				executor().purge();
+			}
+		}
+		
+		private static long millis(long nanos) {
+			return TimeUnit.NANOSECONDS.toMillis(nanos);
+		}
+		
+	}
+	
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.lang.reflect.Field;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>The value of a {@link Tell} annotation compiled once in
+ * literal segments and field names. The fields are resolved
+ * the first time an argument of a class is told, so every
+ * call only reads and formats their values.</p>
+ * @author alessandro.simi@gmail.com
+ */
+final class TellTemplate {
+
+	private static final Pattern FIELD = Pattern.compile("\\$\\{(.*?)\\}");
+	
+	private final String[] literals;
+	private final String[] names;
+	
+	private volatile Fields fields;
+	
+	private TellTemplate(String[] literals, String[] names) {
+		this.literals = literals;
+		this.names = names;
+	}
+	
+	static TellTemplate compile(Tell tell) {
+		List<String> literals = new ArrayList<String>();
+		List<String> names = new ArrayList<String>();
+		String value = tell.value();
+		Matcher matcher = FIELD.matcher(value);
+		int start = 0;
+		while (matcher.find()) {
+			literals.add(value.substring(start, matcher.start()));
+			names.add(matcher.group(1));
+			start = matcher.end();
+		}
+		literals.add(value.substring(start));
+		return new TellTemplate(literals.toArray(new String[literals.size()]), names.toArray(new String[names.size()]));
+	}
+	
+	/**
+	 * @return the value of the annotation with the fields of the
+	 * argument formatted, {@link MethodConverter.ReplaceArguments#FIELD_NOT_FOUND}
+	 * for the fields missing or not readable.
+	 */
+	String format(Object argument, SimpleDateFormat dateFormat) {
+		StringBuilder builder = new StringBuilder(literals[0]);
+		Field[] resolved = argument != null ? resolve(argument.getClass()) : null;
+		for (int i = 0; i < names.length; i++) {
+			builder.append(value(resolved != null ? resolved[i] : null, argument, dateFormat));
+			builder.append(literals[i + 1]);
+		}
+		return builder.toString();
+	}
+	
+	private static String value(Field field, Object argument, SimpleDateFormat dateFormat) {
+		if (field == null) {
+			return MethodConverter.ReplaceArguments.FIELD_NOT_FOUND;
+		}
+		try {
+			return MethodConverter.ReplaceArguments.format(field.get(argument), dateFormat);
+		} catch (Exception e) {
+			return MethodConverter.ReplaceArguments.FIELD_NOT_FOUND;
+		}
+	}
+	
+	/**
+	 * @return the fields of the class, null where the class
+	 * declares no field with the name, resolved again only
+	 * when an argument of another class is told.
+	 */
+	private Field[] resolve(Class<?> type) {
+		Fields fields = this.fields;
+		if (fields == null || fields.type != type) {
+			Field[] resolved = new Field[names.length];
+			for (int i = 0; i < names.length; i++) {
+				try {
+					resolved[i] = type.getDeclaredField(names[i]);
+					resolved[i].setAccessible(true);
+				} catch (Exception e) {
+					resolved[i] = null;
+				}
+			}
+			fields = new Fields(type, resolved);
+			this.fields = fields;
+		}
+		return fields.resolved;
+	}
+	
+	private static class Fields {
+		
+		private final Class<?> type;
+		private final Field[] resolved;
+		
+		Fields(Class<?> type, Field[] resolved) {
+			this.type = type;
+			this.resolved = resolved;
+		}
+		
+	}
+	
+}
@@ -16,6 +16,7 @@
 package io.exemplary.guice;
 
 import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -75,7 +76,6 @@ public abstract class TestInterceptor {
 	static class Wrapper {
 		
 		private Set<Class<? extends TestInterceptor>> interceptorClasses = new LinkedHashSet<Class<? extends TestInterceptor>>();
-		private Set<TestInterceptor> interceptors = new LinkedHashSet<TestInterceptor>();
 
 		void addInterceptor(Class<? extends TestInterceptor> interceptor) {
 			interceptorClasses.add(interceptor);
@@ -84,9 +84,14 @@ public abstract class TestInterceptor {
 		/**
 		 * Adds the list of inteceptors classes from
 		 * Wrapper instances bound with a named key
-		 * equals to the name of the module.
+		 * equals to the name of the module. The
+		 * interceptors of the parent injectors come
+		 * first.
 		 */
 		void addInterceptorsFromModules(Injector injector) {
+			if (injector.getParent() != null) {
+				addInterceptorsFromModules(injector.getParent());
+			}
 			for (Entry<Key<?>, Binding<?>> entry : injector.getBindings().entrySet()) {
 				Key<?> key = entry.getKey();
 				Binding<?> binding = entry.getValue();
@@ -103,21 +108,19 @@ public abstract class TestInterceptor {
 			return key.getTypeLiteral().getRawType().equals(Wrapper.class);
 		}
 
-		Set<TestInterceptor> getInterceptors() {
-			return interceptors;
-		}
-
 		/**
-		 * Cleans and re-populate the interceptors set
-		 * to delegate the singleton behavior of the
-		 * interceptors to the Guice configuration.
+		 * Creates a new set of interceptors for every test
+		 * class to delegate the singleton behavior of the
+		 * interceptors to the Guice configuration. The set
+		 * is never modified so it can be shared by the
+		 * threads running the tests.
 		 */
-		void setInterceptors(Injector injector) {
-			interceptors.clear();
+		Set<TestInterceptor> createInterceptors(Injector injector) {
+			Set<TestInterceptor> interceptors = new LinkedHashSet<TestInterceptor>();
 			for (Class<? extends TestInterceptor> interceptorClass : interceptorClasses) {
-				TestInterceptor interceptor = injector.getInstance(interceptorClass);
-				this.interceptors.add(interceptor);
+				interceptors.add(injector.getInstance(interceptorClass));
 			}
+			return Collections.unmodifiableSet(interceptors);
 		}
 		
 	}
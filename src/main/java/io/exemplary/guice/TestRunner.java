@@ -16,20 +16,29 @@
 package io.exemplary.guice;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.junit.Ignore;
 import org.junit.internal.AssumptionViolatedException;
 import org.junit.internal.runners.model.EachTestNotifier;
 import org.junit.runner.Description;
+import org.junit.runner.Result;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.manipulation.NoTestsRemainException;
+import org.junit.runner.notification.RunListener;
 import org.junit.runner.notification.RunNotifier;
 import org.junit.runners.BlockJUnit4ClassRunner;
 import org.junit.runners.model.FrameworkMethod;
 import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.Statement;
 
+import com.google.inject.AbstractModule;
+import com.google.inject.ConfigurationException;
+import com.google.inject.CreationException;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.Module;
+import com.google.inject.Stage;
+import io.exemplary.guice.StartupListener.Phase;
 import io.exemplary.guice.TestInterceptor.Wrapper;
 
 /** 
@@ -60,14 +69,84 @@ import io.exemplary.guice.TestInterceptor.Wrapper;
  * <p>An interceptor allows to execute code before and
  * after the single test runs and before the class is
  * created.</p>
+ * <p>The tests can run concurrently adding the {@link Parallel}
+ * annotation to the class.</p>
+ * <p>The injectors are shared by the test classes with the
+ * same modules and kept in memory by default. The system
+ * property {@code guice.behave.injectors.size} limits the
+ * number of injectors kept while {@code guice.behave.injectors.release}
+ * closes an injector as soon as the last test class using it
+ * has run. The {@link java.io.Closeable} instances created
+ * by an injector are closed with it.</p>
+ * <p>The {@link Stage} of the injectors, set by the {@link Modules}
+ * annotation, can be forced for all the classes with the system
+ * property {@code guice.behave.stage}. The {@link Stage#TOOL} stage
+ * only validates the bindings of the test classes, ignoring their tests.</p>
  */  
 public class TestRunner extends BlockJUnit4ClassRunner {
 
-	private final static Map<String, Injector> injectors = new ConcurrentHashMap<String, Injector>();
-	private final static Map<String, TestInterceptor.Wrapper> interceptors = new ConcurrentHashMap<String, TestInterceptor.Wrapper>();
+	/**
+	 * System property with the maximum number of injectors kept
+	 * in memory, the least recently used are closed first.
+	 */
+	final static String INJECTORS_SIZE = "guice.behave.injectors.size";
+	
+	/**
+	 * System property to close an injector as soon as
+	 * the last test class using it has run.
+	 */
+	final static String INJECTORS_RELEASE = "guice.behave.injectors.release";
+	
+	/**
+	 * System property with the {@link Stage} of all
+	 * the injectors, overriding {@link Modules#stage()}.
+	 */
+	final static String STAGE = "guice.behave.stage";
+	
+	/**
+	 * System property set to <code>virtual</code> to run the
+	 * parallel tests and the load tests on virtual threads
+	 * when the JVM supports them.
+	 */
+	final static String THREADS = "guice.behave.threads";
+	final static String VIRTUAL = "virtual";
 	
-	private final Injector injector;
-	private final TestInterceptor.Wrapper testInterceptors;
+	final static String PARENT_SEPARATOR = " > ";
+	
+	private final static Set<TestRunner> planned = Collections.synchronizedSet(new HashSet<TestRunner>());
+	private final static RunListener unplanned = new RunListener() {
+		@Override
+		public void testRunFinished(Result result) {
+			discardPlanned();
+		}
+	};
+	private final static Registry<TestInterceptor.Wrapper> interceptors = new Registry<TestInterceptor.Wrapper>();
+	private final static Registry<Injector> parents = new Registry<Injector>(Integer.getInteger(INJECTORS_SIZE, 0), Boolean.getBoolean(INJECTORS_RELEASE), new Registry.Listener<Injector>() {
+		@Override
+		public void onRemove(String key, Injector injector) {
+			Closeables.close(injector);
+		}
+	});
+	private final static Registry<Injector> injectors = new Registry<Injector>(Integer.getInteger(INJECTORS_SIZE, 0), Boolean.getBoolean(INJECTORS_RELEASE), new Registry.Listener<Injector>() {
+		@Override
+		public void onRemove(String key, Injector injector) {
+			interceptors.remove(key);
+			Closeables.close(injector);
+			if (injector.getParent() != null) {
+				parents.release(key.substring(0, key.indexOf(PARENT_SEPARATOR)), injector.getParent());
+			}
+		}
+	});
+	
+	private final Modules annotation;
+	private final String key;
+	private final Stage stage;
+	final boolean virtual;
+	private final boolean outOfShard;
+	private Injector sharedInjector;
+	private Injector injector;
+	private RunnerScope.Context classContext;
+	private Set<TestInterceptor> testInterceptors;
 	
 	/** 
 	 * Creates a Runner with Guice modules. 
@@ -75,30 +154,358 @@ public class TestRunner extends BlockJUnit4ClassRunner {
 	 * @throws InitializationError if the test class is malformed 
 	 */  
 	public TestRunner(final Class<?> classToRun) throws InitializationError {  
+		this(classToRun, false);
+	}
+	
+	/**
+	 * Creates a Runner that can defer the creation of the
+	 * injector until it runs, so the {@link GuiceSuite} can
+	 * build it in background while the other classes run.
+	 */
+	TestRunner(final Class<?> classToRun, boolean deferred) throws InitializationError {
 		super(classToRun);
-		injector = getInjector(classToRun);
-		testInterceptors = getInterceptors(classToRun);
-		for (TestInterceptor interceptor : testInterceptors.getInterceptors()) {
-			interceptor.beforeClassCreation(classToRun);
+		annotation = getModulesAnnotation(classToRun);
+		key = getKey(annotation);
+		stage = getStage(annotation);
+		Parallel parallel = classToRun.getAnnotation(Parallel.class);
+		virtual = VIRTUAL.equalsIgnoreCase(System.getProperty(THREADS)) || (parallel != null && parallel.virtual());
+		if (parallel != null) {
+			setScheduler(new ParallelScheduler(classToRun, parallel, virtual));
+		}
+		outOfShard = isOutOfShard(key);
+		if (!deferred && !outOfShard) {
+			initialize();
+			planned.add(this);
+		}
+	}
+	
+	/**
+	 * <p>Gets the injector and creates the interceptors
+	 * of the test class.</p>
+	 * <p>The runner acquires the injector when it is created,
+	 * unless it is deferred, so the injector is not released
+	 * while other runners with the same key are still to run,
+	 * and acquires it again when it runs. The runner validated
+	 * when created is initialized again only if its injector
+	 * has been removed in the meantime.</p>
+	 */
+	private void initialize() throws InitializationError {
+		Class<?> classToRun = getTestClass().getJavaClass();
+		long start = System.nanoTime();
+		InjectorBuilder builder = getInjectorBuilder(annotation);
+		Injector shared = injectors.acquire(key, builder);
+		if (shared == sharedInjector) {
+			return;
+		}
+		sharedInjector = shared;
+		ShardFilter.record(key, System.nanoTime() - start);
+		fire(key, builder.built ? Phase.CACHE_MISS : Phase.CACHE_HIT, start);
+		try {
+			injector = getClassInjector(classToRun);
+			if (stage == Stage.TOOL) {
+				validateBinding(classToRun);
+				testInterceptors = Collections.emptySet();
+			} else {
+				start = System.nanoTime();
+				testInterceptors = getInterceptors(classToRun);
+				fire(key, Phase.INTERCEPTORS, start);
+			}
+			start = System.nanoTime();
+			for (TestInterceptor interceptor : testInterceptors) {
+				interceptor.beforeClassCreation(classToRun);
+			}
+			fire(key, Phase.BEFORE_CLASS_CREATION, start);
+			initialized();
+		} catch (InitializationError e) {
+			failed();
+			throw e;
+		} catch (RuntimeException e) {
+			failed();
+			throw e;
+		}
+	}
+	
+	private void failed() {
+		injectors.release(key, sharedInjector);
+		sharedInjector = null;
+	}
+	
+	/**
+	 * Releases the injector acquired when the runner was
+	 * created, if the runner hasn't run in the meantime.
+	 */
+	private void discard() {
+		if (planned.remove(this)) {
+			injectors.release(key, sharedInjector);
+			sharedInjector = null;
+		}
+	}
+	
+	/**
+	 * Releases the injectors of the runners created
+	 * and never run, e.g. dropped by a suite filter.
+	 */
+	private static void discardPlanned() {
+		List<TestRunner> runners;
+		synchronized (planned) {
+			runners = new ArrayList<TestRunner>(planned);
+		}
+		for (TestRunner runner : runners) {
+			runner.discard();
+		}
+	}
+	
+	/**
+	 * Invoked when the injector and the interceptors
+	 * of the test class are ready.
+	 */
+	void initialized() throws InitializationError {}
+	
+	/**
+	 * Builds the injector of the deferred runner so it is ready
+	 * when the runner runs. The injector is acquired, so it is
+	 * not closed before the runner acquires it as well, and must
+	 * be released with {@link #releasePrebuilt(Injector)}.
+	 * @return the injector, null if the class runs in another shard.
+	 */
+	final Injector prebuild() throws InitializationError {
+		if (outOfShard) {
+			return null;
 		}
+		return injectors.acquire(key, getInjectorBuilder(annotation));
+	}
+	
+	/**
+	 * Releases the injector returned by {@link #prebuild()}.
+	 */
+	final void releasePrebuilt(Injector injector) {
+		injectors.release(key, injector);
 	}
 	
 	/**
 	 * @return the proper {@link Injector} based on the modules
-	 * inside the {@link Modules} annotation.
+	 * inside the {@link Modules} annotation. The injector is
+	 * created only once even when the runners with the same
+	 * modules are created concurrently.
 	 */
 	final Injector getInjector(Class<?> classToRun) throws InitializationError {
 		Modules annotation = getModulesAnnotation(classToRun);
-		String key = getKey(annotation);
-		Injector injector = injectors.get(key);
-		if (injector == null) {
-			injector = Guice.createInjector(getModules(annotation));
-			injectors.put(key, injector);
-		}
+		return injectors.get(getKey(annotation), getInjectorBuilder(annotation));
+	}
+	
+	/**
+	 * @return the injector of the test class.
+	 */
+	final Injector getInjector() {
 		return injector;
 	}
 	
-	final Modules getModulesAnnotation(Class<?> classToRun) throws InitializationError {
+	/**
+	 * Notifies the {@link StartupListener}s the phase
+	 * started at the given time is ended.
+	 */
+	private void fire(String key, Phase phase, long start) {
+		StartupListeners.fire(getTestClass().getJavaClass(), key, phase, start);
+	}
+	
+	/**
+	 * Adds a listener of the start of the test classes.
+	 * @param listener the listener to add.
+	 */
+	public static void addStartupListener(StartupListener listener) {
+		StartupListeners.add(listener);
+	}
+	
+	/**
+	 * Removes a listener of the start of the test classes.
+	 * @param listener the listener to remove.
+	 */
+	public static void removeStartupListener(StartupListener listener) {
+		StartupListeners.remove(listener);
+	}
+	
+	private InjectorBuilder getInjectorBuilder(Modules annotation) {
+		return new InjectorBuilder(annotation);
+	}
+	
+	/**
+	 * <p>Builds the injector of the modules, timing the
+	 * instantiation of the modules and the creation of the
+	 * injector.</p>
+	 * <p>The injector is a child of the parent injector,
+	 * shared by the classes with the same parent modules,
+	 * when the {@link Modules} annotation lists them.</p>
+	 */
+	private class InjectorBuilder implements Registry.Builder<Injector> {
+		
+		private final Modules annotation;
+		private boolean built;
+		
+		InjectorBuilder(Modules annotation) {
+			this.annotation = annotation;
+		}
+		
+		@Override
+		public Injector build() throws InitializationError {
+			built = true;
+			final Stage stage = getStage(annotation);
+			if (annotation.parent().length == 0) {
+				return createInjector(null, stage, key, false);
+			}
+			final String parentKey = getParentKey(annotation);
+			Injector parent = parents.acquire(parentKey, new Registry.Builder<Injector>() {
+				@Override
+				public Injector build() throws InitializationError {
+					return createInjector(null, stage, parentKey, true);
+				}
+			});
+			try {
+				return createInjector(parent, stage, key, false);
+			} catch (InitializationError e) {
+				parents.release(parentKey, parent);
+				throw e;
+			} catch (RuntimeException e) {
+				parents.release(parentKey, parent);
+				throw e;
+			}
+		}
+		
+		/**
+		 * Creates the modules, the parent ones or the others,
+		 * and the injector, child of the parent when it is not null.
+		 */
+		private Injector createInjector(Injector parent, Stage stage, String key, boolean parentModules) throws InitializationError {
+			long start = System.nanoTime();
+			List<Module> modules = parentModules ? createModules(sort(annotation.parent())) : getModules(annotation);
+			fire(key, Phase.MODULES, start);
+			start = System.nanoTime();
+			Injector injector;
+			if (parent == null) {
+				modules.add(new RunnerScope.Module());
+				injector = Guice.createInjector(stage, modules);
+			} else {
+				injector = parent.createChildInjector(modules);
+			}
+			fire(key, Phase.INJECTOR, start);
+			return injector;
+		}
+		
+	}
+	
+	/**
+	 * <p>The just in time binding of the test class goes to
+	 * the parent injector when the class doesn't depend
+	 * on the child modules, losing the method interceptors
+	 * bound by them.</p>
+	 * <p>A child injector with the explicit binding of the test
+	 * class, cheap to create, keeps the interceptors.</p>
+	 */
+	private Injector getClassInjector(final Class<?> classToRun) throws InitializationError {
+		if (sharedInjector.getParent() == null) {
+			return sharedInjector;
+		}
+		try {
+			return sharedInjector.createChildInjector(new AbstractModule() {
+				@Override
+				protected void configure() {
+					bind(classToRun);
+				}
+			});
+		} catch (CreationException e) {
+			throw new InitializationError(e);
+		}
+	}
+	
+	/**
+	 * Checks the dependencies of the test class without
+	 * creating it when the injector is only validated.
+	 */
+	private void validateBinding(Class<?> classToRun) throws InitializationError {
+		try {
+			injector.getBinding(classToRun);
+		} catch (ConfigurationException e) {
+			throw new InitializationError(e);
+		}
+	}
+	
+	/**
+	 * @return the stage from the system property when it is
+	 * set, from the {@link Modules} annotation otherwise.
+	 */
+	static Stage getStage(Modules annotation) throws InitializationError {
+		String property = System.getProperty(STAGE);
+		if (property == null || property.trim().isEmpty()) {
+			return annotation.stage();
+		}
+		try {
+			return Stage.valueOf(property.trim().toUpperCase(Locale.ENGLISH));
+		} catch (IllegalArgumentException e) {
+			throw new InitializationError("The stage " + property + " is not a Guice stage, expected one of " + Arrays.toString(Stage.values()) + ".");
+		}
+	}
+	
+	/**
+	 * @return true if the classes with the key run in
+	 * another shard than the one in the system properties.
+	 */
+	private static boolean isOutOfShard(String key) throws InitializationError {
+		try {
+			ShardFilter shard = ShardFilter.fromSystemProperties();
+			return shard != null && !shard.shouldRun(key);
+		} catch (IllegalArgumentException e) {
+			throw new InitializationError(e);
+		}
+	}
+	
+	/**
+	 * @return the key of the injector of the test class.
+	 */
+	final String getInjectorKey() {
+		return key;
+	}
+	
+	/**
+	 * @return the number of runners created or running
+	 * with the injector of the key.
+	 */
+	static int getInjectorReferences(String key) {
+		return injectors.references(key);
+	}
+	
+	/**
+	 * Closes the injectors as soon as the last runner
+	 * using them releases them, as the system property
+	 * {@code guice.behave.injectors.release} does.
+	 */
+	static void setInjectorsRelease(boolean release) {
+		injectors.setReleaseUnused(release);
+		parents.setReleaseUnused(release);
+	}
+	
+	/**
+	 * Removes the injector of the key, closing it.
+	 */
+	static void removeInjector(String key) {
+		injectors.remove(key);
+	}
+	
+	/**
+	 * Removes the parent injector of the key, closing it.
+	 */
+	static void removeParentInjector(String parentKey) {
+		parents.remove(parentKey);
+	}
+	
+	/**
+	 * Removes all the cached injectors, closing them,
+	 * so the next runners create them again.
+	 */
+	static void clearInjectors() {
+		injectors.clear();
+		parents.clear();
+	}
+	
+	static Modules getModulesAnnotation(Class<?> classToRun) throws InitializationError {
 		Modules annotation = classToRun.getAnnotation(Modules.class);
 		if (annotation != null) {
 			return annotation;
@@ -107,25 +514,60 @@ public class TestRunner extends BlockJUnit4ClassRunner {
 		}
 	}
 	
-	final String getKey(Modules annotation) throws InitializationError {
+	static String getKey(Modules annotation) throws InitializationError {
 		Class<? extends Module>[] classes = annotation.value();
 		if (classes.length == 0) {
 			throw new InitializationError("The @Modules annotation doesn't list any Guice modules.");
 		}
-		return Arrays.toString(getModuleClasses(annotation));
+		String key = Arrays.toString(getModuleClasses(annotation));
+		if (annotation.parent().length == 0) {
+			return key + getStageKey(annotation);
+		} else {
+			return getParentKey(annotation) + PARENT_SEPARATOR + key;
+		}
+	}
+	
+	private static String getParentKey(Modules annotation) throws InitializationError {
+		return Arrays.toString(sort(annotation.parent())) + getStageKey(annotation);
+	}
+	
+	/**
+	 * The default stage doesn't change the key.
+	 */
+	private static String getStageKey(Modules annotation) throws InitializationError {
+		Stage stage = getStage(annotation);
+		return stage == Stage.DEVELOPMENT ? "" : " in " + stage;
 	}
 	
 	/**
 	 * @return an array of {@link Module}s class from the
-	 * {@link Modules} annotation ordered by name.
+	 * {@link Modules} annotation ordered by name, without
+	 * the parent modules.
 	 */
-	@SuppressWarnings("unchecked")
-	final Class<? extends Module>[] getModuleClasses(Modules annotation) {
+	static Class<? extends Module>[] getModuleClasses(Modules annotation) {
+		Class<? extends Module>[] classes = sort(annotation.value());
+		if (annotation.parent().length == 0) {
+			return classes;
+		}
+		List<Class<? extends Module>> parentClasses = Arrays.asList(annotation.parent());
+		List<Class<? extends Module>> childClasses = new ArrayList<Class<? extends Module>>();
+		for (Class<? extends Module> clazz : classes) {
+			if (!parentClasses.contains(clazz)) {
+				childClasses.add(clazz);
+			}
+		}
+		return toArray(childClasses);
+	}
+	
+	/**
+	 * @return the classes without duplicates ordered by name.
+	 */
+	private static Class<? extends Module>[] sort(Class<? extends Module>[] moduleClasses) {
 		Set<Class<? extends Module>> set = new LinkedHashSet<Class<? extends Module>>();
-		for (Class<? extends Module> clazz : annotation.value()) {
+		for (Class<? extends Module> clazz : moduleClasses) {
 			set.add(clazz);
 		}
-		Class<? extends Module>[] classes = set.toArray(new Class[set.size()]);
+		Class<? extends Module>[] classes = toArray(set);
 		Arrays.sort(classes, new Comparator<Class<? extends Module>>() {
 			@Override
 			public int compare(Class<? extends Module> o1, Class<? extends Module> o2) {
@@ -135,12 +577,20 @@ public class TestRunner extends BlockJUnit4ClassRunner {
 		return classes;
 	}
 	
+	@SuppressWarnings("unchecked")
+	private static Class<? extends Module>[] toArray(Collection<Class<? extends Module>> classes) {
+		return classes.toArray(new Class[classes.size()]);
+	}
+	
 	/**
 	 * @return a list of {@link Module}s instances from
 	 * the {@link Modules} annotation. 
 	 */
 	List<Module> getModules(Modules annotation) throws InitializationError {
-		Class<? extends Module>[] moduleClasses = getModuleClasses(annotation);
+		return createModules(getModuleClasses(annotation));
+	}
+	
+	private List<Module> createModules(Class<? extends Module>[] moduleClasses) throws InitializationError {
 		List<Module> modules = new ArrayList<Module>(moduleClasses.length);
 		for (int i = 0; i < moduleClasses.length; i++) {
 			Class<? extends Module> moduleClass = moduleClasses[i];
@@ -150,24 +600,26 @@ public class TestRunner extends BlockJUnit4ClassRunner {
 				throw new InitializationError("Impossible to instantiate the " + moduleClass.getName() + " Guice Module.");
 			}
 		}
+		modules.add(new Closeables());
 		return modules;
 	}
 	
 	/**
-	 * @return the proper {@link Wrapper} based on the modules
-	 * inside the {@link Modules} annotation.
+	 * @return the interceptors of the test class created from
+	 * the proper {@link Wrapper} based on the modules inside
+	 * the {@link Modules} annotation.
 	 */
-	final TestInterceptor.Wrapper getInterceptors(Class<?> classToRun) throws InitializationError {
+	final Set<TestInterceptor> getInterceptors(Class<?> classToRun) throws InitializationError {
 		Modules annotation = getModulesAnnotation(classToRun);
-		String key = getKey(annotation);
-		TestInterceptor.Wrapper testInterceptors = interceptors.get(key);
-		if (testInterceptors == null) {
-			testInterceptors = new TestInterceptor.Wrapper();
-			testInterceptors.addInterceptorsFromModules(injector);
-			interceptors.put(key, testInterceptors);
-		}
-		testInterceptors.setInterceptors(injector);
-		return testInterceptors;
+		TestInterceptor.Wrapper testInterceptors = interceptors.get(getKey(annotation), new Registry.Builder<TestInterceptor.Wrapper>() {
+			@Override
+			public TestInterceptor.Wrapper build() {
+				TestInterceptor.Wrapper testInterceptors = new TestInterceptor.Wrapper();
+				testInterceptors.addInterceptorsFromModules(injector);
+				return testInterceptors;
+			}
+		});
+		return testInterceptors.createInterceptors(injector);
 	}
 	
 	////////////////////////
@@ -180,7 +632,33 @@ public class TestRunner extends BlockJUnit4ClassRunner {
 	 */
 	@Override  
 	public final Object createTest() {  
-		return injector.getInstance(getTestClass().getJavaClass());  
+		long start = System.nanoTime();
+		Object test = injector.getInstance(getTestClass().getJavaClass());
+		fire(key, Phase.TEST_CREATION, start);
+		return test;
+	}
+	
+	/*
+	 * The classes of another shard have no tests, so
+	 * they are not reported as tests never run.
+	 */
+	@Override
+	protected List<FrameworkMethod> getChildren() {
+		return outOfShard ? Collections.<FrameworkMethod>emptyList() : super.getChildren();
+	}
+	
+	/*
+	 * A class without tests left never runs, so
+	 * it releases its injector straight away.
+	 */
+	@Override
+	public void filter(Filter filter) throws NoTestsRemainException {
+		try {
+			super.filter(filter);
+		} catch (NoTestsRemainException e) {
+			discard();
+			throw e;
+		}
 	}
 	
 	/*
@@ -194,6 +672,82 @@ public class TestRunner extends BlockJUnit4ClassRunner {
 	// Run Method //
 	////////////////
 	
+	/**
+	 * Runs the tests of the class, acquiring the injector
+	 * first (creating it when the runner is deferred), and
+	 * releases the injector so it can be closed when it is
+	 * not used by the other test classes. The injectors of
+	 * the runners never run are released when the whole run
+	 * finishes.
+	 */
+	@Override
+	public void run(RunNotifier notifier) {
+		if (outOfShard) {
+			return;
+		}
+		notifier.removeListener(unplanned);
+		notifier.addListener(unplanned);
+		Injector plannedInjector = planned.remove(this) ? sharedInjector : null;
+		try {
+			initialize();
+		} catch (InitializationError e) {
+			EachTestNotifier testNotifier = new EachTestNotifier(notifier, getDescription());
+			for (Throwable cause : e.getCauses()) {
+				testNotifier.addFailure(cause);
+			}
+			return;
+		} catch (RuntimeException e) {
+			new EachTestNotifier(notifier, getDescription()).addFailure(e);
+			return;
+		} finally {
+			if (plannedInjector != null) {
+				injectors.release(key, plannedInjector);
+			}
+		}
+		long start = System.nanoTime();
+		classContext = new RunnerScope.Context();
+		try {
+			super.run(notifier);
+		} finally {
+			try {
+				finished(notifier);
+			} finally {
+				classContext.close();
+				classContext = null;
+				injectors.release(key, sharedInjector);
+				sharedInjector = null;
+				ShardFilter.record(key, System.nanoTime() - start);
+			}
+		}
+	}
+	
+	/**
+	 * Invoked when all the tests of
+	 * the class have run.
+	 */
+	void finished(RunNotifier notifier) {}
+	
+	/**
+	 * Runs the {@link org.junit.BeforeClass} and {@link org.junit.AfterClass}
+	 * methods and the class rules in the {@link ClassScoped} scope
+	 * of the class as well.
+	 */
+	@Override
+	protected Statement classBlock(RunNotifier notifier) {
+		final Statement statement = super.classBlock(notifier);
+		return new Statement() {
+			@Override
+			public void evaluate() throws Throwable {
+				RunnerScope.Context previous = RunnerScope.CLASS.enter(classContext);
+				try {
+					statement.evaluate();
+				} finally {
+					RunnerScope.CLASS.exit(previous);
+				}
+			}
+		};
+	}
+	
 	/**
 	 * <p>This method runs the test. It was overridden in order
 	 * to add the test interceptor.</p>
@@ -206,37 +760,53 @@ public class TestRunner extends BlockJUnit4ClassRunner {
 	 * <li>Invoke the test method: run the test.</li>
 	 * <li>Invoke afterTestRun method of the test interceptor.</li>
 	 * </ol>
+	 * <p>When the class is annotated with {@link Parallel} this
+	 * method is invoked concurrently by the threads of the pool.</p>
+	 * <p>The test runs in its own {@link TestScoped} scope, closed
+	 * when the test ends, and in the {@link ClassScoped} scope of
+	 * the class.</p>
 	 */
 	@Override
 	protected final void runChild(FrameworkMethod method, RunNotifier notifier) {
 		EachTestNotifier eachNotifier = makeNotifier(method, notifier);
-		// Ignore Test
-		if (method.getAnnotation(Ignore.class) != null) {
+		// Ignore Test, or all the tests when the injector is only validated
+		if (method.getAnnotation(Ignore.class) != null || stage == Stage.TOOL) {
 			eachNotifier.fireTestIgnored();
 			return;
 		}
-		// Before test
-		for (TestInterceptor interceptor : testInterceptors.getInterceptors()) {
-			interceptor.beforeTestRuns(method.getMethod());
-		}
-		// Start
-		eachNotifier.fireTestStarted();
+		// Open the scopes
+		RunnerScope.Context testContext = new RunnerScope.Context();
+		RunnerScope.Context previousClass = RunnerScope.CLASS.enter(classContext);
+		RunnerScope.Context previousTest = RunnerScope.TEST.enter(testContext);
 		try {
-			// Run
-			methodBlock(method).evaluate();
-		} catch(AssumptionViolatedException e) {
-			// Assumption Error
-			eachNotifier.addFailedAssumption(e);
-		} catch(Throwable e) {
-			// Error
-			eachNotifier.addFailure(e);
+			// Before test
+			for (TestInterceptor interceptor : testInterceptors) {
+				interceptor.beforeTestRuns(method.getMethod());
+			}
+			// Start
+			eachNotifier.fireTestStarted();
+			try {
+				// Run
+				methodBlock(method).evaluate();
+			} catch(AssumptionViolatedException e) {
+				// Assumption Error
+				eachNotifier.addFailedAssumption(e);
+			} catch(Throwable e) {
+				// Error
+				eachNotifier.addFailure(e);
+			} finally {
+				// Finish
+				eachNotifier.fireTestFinished();
+			}
+			// After test
+			for (TestInterceptor interceptor : testInterceptors) {
+				interceptor.afterTestRuns(method.getMethod());
+			}
 		} finally {
-			// Finish
-			eachNotifier.fireTestFinished();
-		}
-		// After test
-		for (TestInterceptor interceptor : testInterceptors.getInterceptors()) {
-			interceptor.afterTestRuns(method.getMethod());
+			// Close the scopes
+			testContext.close();
+			RunnerScope.TEST.exit(previousTest);
+			RunnerScope.CLASS.exit(previousClass);
 		}
 	}
 	
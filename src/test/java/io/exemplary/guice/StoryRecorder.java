@@ -0,0 +1,53 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Records the messages printed and the stories and the steps
+ * run by the classes of the tests.</p>
+ * <p>The modules of the classes bind it as a singleton, so
+ * every injector has its own and the tests read it from the
+ * injector of the class they have run.</p>
+ * @author alessandro.simi@gmail.com
+ */
+class StoryRecorder implements AbstractStoryModule.StoryPrinter {
+	
+	final List<String> printed = Collections.synchronizedList(new ArrayList<String>());
+	final List<Object> stories = Collections.synchronizedList(new ArrayList<Object>());
+	final AtomicInteger steps = new AtomicInteger();
+	
+	/**
+	 * Records a run of the story by the instance of the class.
+	 */
+	void storyRuns(Object story) {
+		stories.add(story);
+	}
+	
+	void stepRuns() {
+		steps.incrementAndGet();
+	}
+	
+	@Override public void onStoryBegins(String className, String story) { printed.add(story); }
+	@Override public void onStepBegins(String className, String step) { printed.add(step); }
+	@Override public void onStepEnds(String className, String step) {}
+	@Override public void onStoryEnds(String className, String story) {}
+	
+}
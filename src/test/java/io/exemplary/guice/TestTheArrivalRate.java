@@ -0,0 +1,125 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.notification.RunNotifier;
+
+import com.google.inject.Inject;
+import com.google.inject.Scopes;
+
+@RunWith(StoryRunner.class) @Modules(TestTheArrivalRate.Module.class)
+public class TestTheArrivalRate {
+
+	@Story
+	public void testTheArrivalRate() throws Exception {
+		the_story_is_launched_$1_times_at_the_arrival_rate_even_when_slower_than_the_rate(1 + 100);
+		the_first_failure_fails_the_story();
+		the_class_with_an_arrival_rate_of_$1_fails_before_running(0);
+	}
+	
+	void the_story_is_launched_$1_times_at_the_arrival_rate_even_when_slower_than_the_rate(int times) throws Exception {
+		StoryRunner runner = new StoryRunner(Arrivals.class);
+		Result result = run(runner, "aSlowStory");
+		assertTrue(result.wasSuccessful());
+		assertEquals(times, runner.getInjector().getInstance(StoryRecorder.class).stories.size());
+	}
+	
+	void the_first_failure_fails_the_story() throws Exception {
+		Result result = run(new StoryRunner(FailingArrivals.class), "aFailingStory");
+		assertEquals(1, result.getFailureCount());
+		assertEquals("The story fails", result.getFailures().get(0).getMessage());
+	}
+	
+	void the_class_with_an_arrival_rate_of_$1_fails_before_running(int rate) {
+		Result result = new JUnitCore().run(Request.aClass(NoArrivals.class));
+		assertEquals(1, result.getFailureCount());
+		assertEquals("The arrival rate of aStoryNeverLaunched must be greater than 0 and at most 1000000000 stories per second, not " + (double) rate, result.getFailures().get(0).getMessage());
+	}
+	
+	private Result run(TestRunner runner, String story) throws Exception {
+		runner.filter(Filter.matchMethodDescription(Description.createTestDescription(runner.getTestClass().getJavaClass(), story)));
+		Result result = new Result();
+		RunNotifier notifier = new RunNotifier();
+		notifier.addListener(result.createListener());
+		runner.run(notifier);
+		return result;
+	}
+	
+	@RunWith(StoryRunner.class) @Modules(Module.class)
+	public static class NoArrivals {
+		
+		@Story @ArrivalRate(value = 0, duration = 100, unit = TimeUnit.MILLISECONDS)
+		public void aStoryNeverLaunched() {
+			fail("The story is launched");
+		}
+		
+	}
+	
+	@RunWith(StoryRunner.class) @Modules(ArrivalsModule.class)
+	public static class Arrivals {
+		
+		@Inject private StoryRecorder recorder;
+		
+		@Story @ArrivalRate(value = 1000, duration = 100, unit = TimeUnit.MILLISECONDS, threads = 4)
+		public void aSlowStory() throws InterruptedException {
+			recorder.storyRuns(this);
+			Thread.sleep(5);
+		}
+		
+	}
+	
+	@RunWith(StoryRunner.class) @Modules(FailingArrivalsModule.class)
+	public static class FailingArrivals {
+		
+		@Inject private StoryRecorder recorder;
+		
+		@Story @ArrivalRate(value = 1000, duration = 100, unit = TimeUnit.MILLISECONDS, threads = 4)
+		public void aFailingStory() {
+			recorder.storyRuns(this);
+			if (recorder.stories.size() > 1) {
+				throw new IllegalStateException("The story fails");
+			}
+		}
+		
+	}
+	
+	public static class ArrivalsModule extends AbstractStoryModule {
+		@Override protected void configureStory() {
+			bind(StoryRecorder.class).in(Scopes.SINGLETON);
+		}
+	}
+	
+	public static class FailingArrivalsModule extends AbstractStoryModule {
+		@Override protected void configureStory() {
+			bind(StoryRecorder.class).in(Scopes.SINGLETON);
+		}
+	}
+	
+	public static class Module extends AbstractStoryModule {
+		@Override protected void configureStory() {}
+	}
+	
+}
@@ -0,0 +1,229 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.runner.RunWith;
+
+import com.google.inject.Inject;
+import com.google.inject.Scopes;
+
+@RunWith(StoryRunner.class) @Modules(TestTheAsyncStoryPrinter.Module.class)
+public class TestTheAsyncStoryPrinter {
+
+	@Inject private AbstractStoryModule.StoryPrinter printer;
+	@Inject private StoryPrinterToList storyPrinter;
+	
+	@Story
+	public void testTheAsyncStoryPrinter() throws Exception {
+		the_step_$1_is_printed_in_background("one");
+		the_step_$1_is_printed_in_background("two");
+		List<String> words = new ArrayList<String>(Arrays.asList("one", "two"));
+		the_step_with_$1_is_printed_with_the_arguments_when_it_ran(words);
+		words.add("three");
+		((AsyncStoryPrinter) printer).flush();
+		assertEquals("Story \"Test the async story printer\"", storyPrinter.lines.get(0));
+		assertEquals("The step \"one\" is printed in background", storyPrinter.lines.get(1));
+		assertEquals("The step \"two\" is printed in background", storyPrinter.lines.get(2));
+		assertEquals("The step with \"one\" and \"two\" is printed with the arguments when it ran", storyPrinter.lines.get(3));
+		assertFalse(storyPrinter.threads.contains(Thread.currentThread()));
+		the_drop_policy_drops_the_events_while_the_queue_of_$1_is_full(2);
+		the_sample_policy_keeps_one_event_every_$1_while_the_queue_is_full(AsyncStoryPrinter.SAMPLE_RATE);
+		the_flush_waits_all_the_$1_events_in_the_queue(100);
+		the_close_removes_the_shutdown_hook();
+		the_error_of_the_printer_skips_only_its_event_in_a_queue_of_$1(2);
+	}
+	
+	void the_step_$1_is_printed_in_background(String name) {
+		assertTrue(printer instanceof AsyncStoryPrinter);
+	}
+	
+	void the_step_with_$1_is_printed_with_the_arguments_when_it_ran(List<String> words) {}
+	
+	void the_drop_policy_drops_the_events_while_the_queue_of_$1_is_full(int capacity) throws InterruptedException {
+		BlockedPrinter blocked = new BlockedPrinter();
+		AsyncStoryPrinter printer = new AsyncStoryPrinter(blocked, AsyncStoryPrinter.Policy.DROP, capacity);
+		printer.onStepBegins("Dropped", "Step 0");
+		blocked.entered.await();
+		for (int i = 1; i <= 10; i++) {
+			printer.onStepBegins("Dropped", "Step " + i);
+		}
+		blocked.released.countDown();
+		printer.close();
+		assertEquals(Arrays.asList("Step 0", "Step 1", "Step 2"), blocked.lines);
+	}
+	
+	void the_sample_policy_keeps_one_event_every_$1_while_the_queue_is_full(int rate) throws InterruptedException {
+		final BlockedPrinter blocked = new BlockedPrinter();
+		AsyncStoryPrinter printer = new AsyncStoryPrinter(blocked, AsyncStoryPrinter.Policy.SAMPLE, 2);
+		printer.onStepBegins("Sampled", "Step 0");
+		blocked.entered.await();
+		releaseWhenWaiting(Thread.currentThread(), blocked.released);
+		// Step 1 and 2 fill the queue, the next ones are sampled
+		for (int i = 1; i <= 2 + rate; i++) {
+			printer.onStepBegins("Sampled", "Step " + i);
+		}
+		printer.close();
+		assertEquals(Arrays.asList("Step 0", "Step 1", "Step 2", "Step " + (2 + rate)), blocked.lines);
+	}
+	
+	/**
+	 * Releases the printer when the thread waits
+	 * the space in the queue of the printer.
+	 */
+	private static void releaseWhenWaiting(final Thread thread, final CountDownLatch released) {
+		new Thread("releaser") {
+			@Override
+			public void run() {
+				while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING) {
+					Thread.yield();
+				}
+				released.countDown();
+			}
+		}.start();
+	}
+	
+	void the_flush_waits_all_the_$1_events_in_the_queue(int events) {
+		BlockedPrinter slow = new BlockedPrinter();
+		slow.released.countDown();
+		AsyncStoryPrinter printer = new AsyncStoryPrinter(slow, AsyncStoryPrinter.Policy.BLOCK, 16);
+		for (int i = 0; i < events; i++) {
+			printer.onStepBegins("Flushed", "Step " + i);
+		}
+		printer.flush();
+		assertEquals(events, slow.lines.size());
+		assertEquals("Step " + (events - 1), slow.lines.get(events - 1));
+		printer.close();
+	}
+	
+	void the_close_removes_the_shutdown_hook() {
+		AsyncStoryPrinter printer = new AsyncStoryPrinter(new BlockedPrinter(), AsyncStoryPrinter.Policy.BLOCK, 16);
+		assertFalse(printer.isHooked());
+		printer.onStoryBegins("Closed", "Story");
+		assertTrue(printer.isHooked());
+		printer.close();
+		assertFalse(printer.isHooked());
+	}
+	
+	void the_error_of_the_printer_skips_only_its_event_in_a_queue_of_$1(int capacity) {
+		BrokenPrinter broken = new BrokenPrinter();
+		AsyncStoryPrinter printer = new AsyncStoryPrinter(broken, AsyncStoryPrinter.Policy.BLOCK, capacity);
+		printer.onStepBegins("Broken", "Step 0");
+		printer.flush();
+		for (int i = 1; i <= 2 * capacity; i++) {
+			printer.onStepBegins("Broken", "Step " + i);
+		}
+		printer.close();
+		assertEquals(2 * capacity, broken.lines.size());
+		assertEquals("Step 1", broken.lines.get(0));
+	}
+	
+	////////////
+	// Module //
+	////////////
+	
+	public static class Module extends AbstractStoryModule {
+		@Override
+		protected void configureStory() {
+			bind(StoryPrinterToList.class).in(Scopes.SINGLETON);
+			bindAsyncStoryPrinter(StoryPrinterToList.class);
+		}
+	}
+	
+	/**
+	 * Blocks printing the first step until it is released.
+	 */
+	static class BlockedPrinter implements AbstractStoryModule.StoryPrinter {
+		
+		private final List<String> lines = new CopyOnWriteArrayList<String>();
+		private final CountDownLatch entered = new CountDownLatch(1);
+		private final CountDownLatch released = new CountDownLatch(1);
+		
+		@Override public void onStoryBegins(String className, String story) {}
+		
+		@Override
+		public void onStepBegins(String className, String stepName) {
+			entered.countDown();
+			try {
+				released.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			lines.add(stepName);
+		}
+		
+		@Override public void onStepEnds(String className, String stepName) {}
+		
+		@Override public void onStoryEnds(String className, String story) {}
+		
+	}
+	
+	/**
+	 * Throws an {@link Error} printing the first step.
+	 */
+	static class BrokenPrinter implements AbstractStoryModule.StoryPrinter {
+		
+		private final List<String> lines = new CopyOnWriteArrayList<String>();
+		
+		@Override public void onStoryBegins(String className, String story) {}
+		
+		@Override
+		public void onStepBegins(String className, String stepName) {
+			if (stepName.equals("Step 0")) {
+				throw new AssertionError("The printer is broken");
+			}
+			lines.add(stepName);
+		}
+		
+		@Override public void onStepEnds(String className, String stepName) {}
+		
+		@Override public void onStoryEnds(String className, String story) {}
+		
+	}
+	
+	public static class StoryPrinterToList implements AbstractStoryModule.StoryPrinter {
+
+		private final List<String> lines = new CopyOnWriteArrayList<String>();
+		private final List<Thread> threads = new CopyOnWriteArrayList<Thread>();
+		
+		@Override
+		public void onStoryBegins(String className, String story) {
+			lines.add(story);
+			threads.add(Thread.currentThread());
+		}
+
+		@Override
+		public void onStepBegins(String className, String stepName) {
+			lines.add(stepName);
+			threads.add(Thread.currentThread());
+		}
+
+		@Override
+		public void onStepEnds(String className, String stepName) {}
+
+		@Override
+		public void onStoryEnds(String className, String story) {}
+		
+	}
+	
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.RunWith;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Inject;
+
+@RunWith(StoryRunner.class) @Modules(TestTheBinaryStoryPrinter.Module.class)
+public class TestTheBinaryStoryPrinter {
+
+	private static final File FILE = new File("target/binary-story-printer/story.bin");
+	
+	@Inject private AbstractStoryModule.StoryConverter.Default converter;
+	
+	@Story(id = "BIN-1")
+	public void testTheBinaryStoryPrinter() throws Exception {
+		a_step_with_$1_and_$2("one", Arrays.asList(1, 2, 3));
+		a_step_with_$1_and_$2("one", Arrays.asList(4, 5));
+		a_step_told_by_$1(new Person("John"));
+		a_step_with_a_broken_$1(new Broken());
+		try {
+			a_failing_step();
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+		the_renderer_prints_the_messages_of_the_default_converter();
+		the_renderer_appends_the_events_written_after_closing_the_printer_in_regions_of_$1_bytes(64);
+		two_classes_with_different_modules_share_the_printer_of_the_same_file();
+	}
+	
+	void a_step_with_$1_and_$2(String word, List<Integer> numbers) {}
+	
+	void a_step_told_by_$1(@Tell("${name}") Person person) {}
+	
+	void a_step_with_a_broken_$1(Broken broken) {}
+	
+	void a_failing_step() {
+		throw new IllegalStateException("The step fails");
+	}
+	
+	void the_renderer_prints_the_messages_of_the_default_converter() throws Exception {
+		List<String> lines = render(FILE);
+		assertEquals(Arrays.asList(
+				"STORY_BEGINS TestTheBinaryStoryPrinter Story \"Test the binary story printer\" [BIN-1]",
+				"STEP_BEGINS TestTheBinaryStoryPrinter A step with \"one\" and 1, 2 and 3",
+				"STEP_ENDS TestTheBinaryStoryPrinter A step with \"one\" and 1, 2 and 3",
+				"STEP_BEGINS TestTheBinaryStoryPrinter A step with \"one\" and 4 and 5",
+				"STEP_ENDS TestTheBinaryStoryPrinter A step with \"one\" and 4 and 5",
+				"STEP_BEGINS TestTheBinaryStoryPrinter A step told by \"John\"",
+				"STEP_ENDS TestTheBinaryStoryPrinter A step told by \"John\"",
+				"STEP_BEGINS TestTheBinaryStoryPrinter " + converter.convertMethod(getClass().getDeclaredMethod("a_step_with_a_broken_$1", Broken.class), new Object[] { new Broken() }),
+				"STEP_ENDS TestTheBinaryStoryPrinter " + converter.convertMethod(getClass().getDeclaredMethod("a_step_with_a_broken_$1", Broken.class), new Object[] { new Broken() }),
+				"STEP_BEGINS TestTheBinaryStoryPrinter A failing step",
+				"STEP_BEGINS TestTheBinaryStoryPrinter The renderer prints the messages of the default converter"), lines);
+	}
+	
+	void the_renderer_appends_the_events_written_after_closing_the_printer_in_regions_of_$1_bytes(int size) throws IOException {
+		File file = new File(FILE.getParentFile(), "closed.bin");
+		BinaryStoryPrinter printer = new BinaryStoryPrinter(file, size);
+		printer.onStepBegins("Closed", "Before closing");
+		printer.close();
+		for (int i = 0; i < 10; i++) {
+			printer.onStepBegins("Closed", "After closing " + i);
+		}
+		printer.close();
+		List<String> lines = render(file);
+		assertEquals(11, lines.size());
+		assertEquals("STEP_BEGINS Closed Before closing", lines.get(0));
+		assertEquals("STEP_BEGINS Closed After closing 9", lines.get(10));
+	}
+	
+	void two_classes_with_different_modules_share_the_printer_of_the_same_file() throws IOException {
+		writers.clear();
+		assertTrue(new JUnitCore().run(Request.aClass(FirstWriter.class)).wasSuccessful());
+		assertTrue(new JUnitCore().run(Request.aClass(SecondWriter.class)).wasSuccessful());
+		assertEquals(2, writers.size());
+		assertSame(writers.get(0), writers.get(1));
+		assertEquals(Arrays.asList(
+				"STORY_BEGINS FirstWriter Story \"First writer\"",
+				"STORY_ENDS FirstWriter Story \"First writer\"",
+				"STORY_BEGINS SecondWriter Story \"Second writer\"",
+				"STORY_ENDS SecondWriter Story \"Second writer\""), render(SHARED));
+	}
+	
+	private List<String> render(File file) throws IOException {
+		final List<String> lines = new ArrayList<String>();
+		BinaryStoryRenderer.render(file, new AbstractStoryModule.StoryPrinter() {
+			@Override public void onStoryBegins(String className, String story) { lines.add("STORY_BEGINS " + className + " " + story); }
+			@Override public void onStepBegins(String className, String step) { lines.add("STEP_BEGINS " + className + " " + step); }
+			@Override public void onStepEnds(String className, String step) { lines.add("STEP_ENDS " + className + " " + step); }
+			@Override public void onStoryEnds(String className, String story) { lines.add("STORY_ENDS " + className + " " + story); }
+		});
+		return lines;
+	}
+	
+	static class Person {
+		private final String name;
+		Person(String name) { this.name = name; }
+	}
+	
+	static class Broken {
+		@Override public String toString() { throw new UnsupportedOperationException(); }
+	}
+	
+	public static class Module extends AbstractStoryModule {
+		@Override protected void configureStory() {
+			bindBinaryStoryPrinter(FILE);
+		}
+	}
+	
+	private static final File SHARED = new File(FILE.getParentFile(), "shared.bin");
+	static final List<AbstractStoryModule.StoryPrinter> writers = new ArrayList<AbstractStoryModule.StoryPrinter>();
+	
+	@RunWith(StoryRunner.class) @Modules(SharedModule.class)
+	public static class FirstWriter {
+		@Inject private AbstractStoryModule.StoryPrinter printer;
+		@Story public void firstWriter() { writers.add(printer); }
+	}
+	
+	@RunWith(StoryRunner.class) @Modules({ SharedModule.class, OtherModule.class })
+	public static class SecondWriter {
+		@Inject private AbstractStoryModule.StoryPrinter printer;
+		@Story public void secondWriter() { writers.add(printer); }
+	}
+	
+	public static class SharedModule extends AbstractStoryModule {
+		@Override protected void configureStory() {
+			bindBinaryStoryPrinter(SHARED);
+		}
+	}
+	
+	public static class OtherModule extends AbstractModule {
+		@Override protected void configure() {}
+	}
+	
+}
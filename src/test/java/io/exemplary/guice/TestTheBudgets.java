@@ -0,0 +1,115 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+
+@RunWith(StoryRunner.class) @Modules(TestTheBudgets.Module.class)
+public class TestTheBudgets {
+
+	@Story @Budget(value = 10000, hardLimit = 20000)
+	public void testTheBudgets() throws Exception {
+		a_step_within_its_budget();
+		try {
+			a_step_sleeping_$1_ms_over_its_budget(50);
+			fail("The step should exceed its budget");
+		} catch (BudgetExceededError e) {
+			assertTrue(e.getMessage(), e.getMessage().matches("Step \"A step sleeping 50 ms over its budget\" took \\d+ ms, over its budget of 10 ms"));
+			assertTrue(e.getCause().getMessage().startsWith("Thread dump of \"" + Thread.currentThread().getName() + "\""));
+		}
+		try {
+			a_step_hanging_over_its_hard_limit();
+			fail("The step should be interrupted");
+		} catch (BudgetExceededError e) {
+			assertTrue(e.getMessage(), e.getMessage().matches("Step \"A step hanging over its hard limit\" was interrupted after \\d+ ms at its hard limit of 50 ms"));
+			assertTrue(e.getCause() instanceof InterruptedException);
+		}
+		assertFalse("The interruption is cleared", Thread.currentThread().isInterrupted());
+		a_story_over_its_budget_fails_with_its_slowest_step();
+		a_story_interrupted_at_its_hard_limit_clears_the_interruption();
+	}
+	
+	void a_story_over_its_budget_fails_with_its_slowest_step() {
+		Result result = new JUnitCore().run(Request.method(Stories.class, "aStoryOverItsBudget"));
+		assertEquals(1, result.getFailureCount());
+		String message = result.getFailures().get(0).getMessage();
+		assertTrue(message, message.matches("Story \"A story over its budget\" took \\d+ ms, over its budget of 20 ms, the slowest step \"A step sleeping 40 ms\" took \\d+ ms"));
+	}
+	
+	void a_story_interrupted_at_its_hard_limit_clears_the_interruption() {
+		Result result = new JUnitCore().run(Request.method(Stories.class, "aStoryHangingOverItsHardLimit"));
+		assertEquals(1, result.getFailureCount());
+		Throwable failure = result.getFailures().get(0).getException();
+		assertTrue(failure.getMessage(), failure.getMessage().matches("Story \"A story hanging over its hard limit\" was interrupted after \\d+ ms at its hard limit of 50 ms, the slowest step \"A step spinning until interrupted\" took \\d+ ms"));
+	}
+	
+	@Budget(1000)
+	void a_step_within_its_budget() {}
+	
+	@Budget(value = 10, threadDump = true)
+	void a_step_sleeping_$1_ms_over_its_budget(long millis) throws InterruptedException {
+		Thread.sleep(millis);
+	}
+	
+	@Budget(value = 10, hardLimit = 50)
+	void a_step_hanging_over_its_hard_limit() throws InterruptedException {
+		Thread.sleep(60000);
+	}
+	
+	@RunWith(StoryRunner.class) @Modules(Module.class)
+	public static class Stories {
+		
+		@Story @Budget(20)
+		public void aStoryOverItsBudget() throws InterruptedException {
+			a_step_sleeping_$1_ms(1);
+			a_step_sleeping_$1_ms(40);
+		}
+		
+		@Story @Budget(value = 10, hardLimit = 50)
+		public void aStoryHangingOverItsHardLimit() {
+			a_step_spinning_until_interrupted();
+		}
+		
+		void a_step_sleeping_$1_ms(long millis) throws InterruptedException {
+			Thread.sleep(millis);
+		}
+		
+		void a_step_spinning_until_interrupted() {
+			long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+			while (!Thread.currentThread().isInterrupted() && System.nanoTime() - deadline < 0) {
+				Thread.yield();
+			}
+		}
+		
+		@After public void the_interruption_is_cleared() {
+			assertFalse("The interruption is cleared", Thread.currentThread().isInterrupted());
+		}
+		
+	}
+	
+	public static class Module extends AbstractStoryModule {
+		@Override protected void configureStory() {}
+	}
+	
+}
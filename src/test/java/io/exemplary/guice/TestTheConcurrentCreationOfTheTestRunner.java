@@ -0,0 +1,125 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.model.InitializationError;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Injector;
+
+@RunWith(StoryRunner.class) @Modules(TestTheConcurrentCreationOfTheTestRunner.Module.class)
+public class TestTheConcurrentCreationOfTheTestRunner {
+
+	private static final int RUNNERS = 4;
+	
+	@Story
+	public void testTheConcurrentCreation() throws Exception {
+		the_runners_of_a_class_created_concurrently_share_$1_injector(1);
+		the_runners_of_a_class_with_a_failing_module_created_concurrently_fail_$1_times(RUNNERS);
+	}
+	
+	void the_runners_of_a_class_created_concurrently_share_$1_injector(int injectors) throws Exception {
+		List<Future<Injector>> results = createRunners(WithSlowModule.class);
+		Injector injector = results.get(0).get();
+		for (Future<Injector> result : results) {
+			assertSame(injector, result.get());
+		}
+		assertEquals(injectors, SlowModule.creationCounter.get());
+	}
+	
+	void the_runners_of_a_class_with_a_failing_module_created_concurrently_fail_$1_times(int failures) throws Exception {
+		int counter = 0;
+		for (Future<Injector> result : createRunners(WithFailingModule.class)) {
+			try {
+				result.get();
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof InitializationError);
+				counter++;
+			}
+		}
+		assertEquals(failures, counter);
+	}
+	
+	private List<Future<Injector>> createRunners(final Class<?> classToRun) {
+		ExecutorService executor = Executors.newFixedThreadPool(RUNNERS);
+		try {
+			List<Future<Injector>> results = new ArrayList<Future<Injector>>();
+			for (int i = 0; i < RUNNERS; i++) {
+				results.add(executor.submit(new Callable<Injector>() {
+					@Override
+					public Injector call() throws Exception {
+						TestRunner runner = new TestRunner(classToRun);
+						return runner.getInjector(classToRun);
+					}
+				}));
+			}
+			return results;
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Modules(SlowModule.class)
+	public static class WithSlowModule {
+		@Test public void runnable() {}
+	}
+	
+	public static class SlowModule extends AbstractModule {
+		static final AtomicInteger creationCounter = new AtomicInteger();
+		@Override protected void configure() {
+			creationCounter.incrementAndGet();
+			sleep();
+		}
+	}
+	
+	@Modules(FailingModule.class)
+	public static class WithFailingModule {
+		@Test public void runnable() {}
+	}
+	
+	public static class FailingModule extends AbstractModule {
+		@Override protected void configure() {
+			sleep();
+			throw new IllegalStateException("The module fails");
+		}
+	}
+	
+	private static void sleep() {
+		try {
+			Thread.sleep(200);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	public static class Module extends AbstractModule {
+		@Override protected void configure() {}
+	}
+	
+}
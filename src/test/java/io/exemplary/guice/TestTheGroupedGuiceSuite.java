@@ -0,0 +1,125 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import static org.junit.Assert.*;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite.SuiteClasses;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+@RunWith(StoryRunner.class) @Modules(TestTheGroupedGuiceSuite.Module.class)
+public class TestTheGroupedGuiceSuite {
+
+	@Story
+	public void testTheGroupedGuiceSuite() {
+		the_suite_runs_the_classes_grouped_by_their_modules();
+		every_injector_is_built_once_and_closed_after_its_group();
+		the_injector_of_the_next_group_is_built_after_the_previous_group_is_closed();
+	}
+	
+	void the_suite_runs_the_classes_grouped_by_their_modules() {
+		Result result = new JUnitCore().run(Request.aClass(Grouped.class));
+		assertTrue(result.wasSuccessful());
+		assertEquals(Arrays.asList("FirstA", "SecondA", "FirstB"), order);
+	}
+	
+	void every_injector_is_built_once_and_closed_after_its_group() {
+		assertEquals(1, ModuleA.configured);
+		assertTrue("Closed before the next group", closedBeforeB);
+	}
+	
+	void the_injector_of_the_next_group_is_built_after_the_previous_group_is_closed() {
+		assertTrue(ModuleB.configured);
+		assertFalse("Built before the previous group is closed", Resource.nextGroupBuiltBeforeClose);
+	}
+	
+	static final List<String> order = new ArrayList<String>();
+	static boolean closedBeforeB;
+	
+	@RunWith(GroupedGuiceSuite.class)
+	@SuiteClasses({ FirstA.class, FirstB.class, SecondA.class })
+	public static class Grouped {}
+	
+	@RunWith(TestRunner.class) @Modules(ModuleA.class)
+	public static class FirstA {
+		@Inject private Resource resource;
+		@Test public void runnable() {
+			assertFalse(resource.closed);
+			order.add("FirstA");
+		}
+	}
+	
+	@RunWith(TestRunner.class) @Modules(ModuleA.class)
+	public static class SecondA {
+		@Inject private Resource resource;
+		@Test public void runnable() {
+			assertFalse(resource.closed);
+			order.add("SecondA");
+		}
+	}
+	
+	@RunWith(TestRunner.class) @Modules(ModuleB.class)
+	public static class FirstB {
+		@Test public void runnable() {
+			closedBeforeB = Resource.instance.closed;
+			order.add("FirstB");
+		}
+	}
+	
+	@Singleton
+	public static class Resource implements Closeable {
+		static Resource instance;
+		static boolean nextGroupBuiltBeforeClose;
+		boolean closed;
+		Resource() { instance = this; }
+		@Override public void close() {
+			nextGroupBuiltBeforeClose = ModuleB.configured;
+			closed = true;
+		}
+	}
+	
+	public static class ModuleA extends AbstractModule {
+		static int configured;
+		@Override protected void configure() {
+			configured++;
+		}
+	}
+	
+	public static class ModuleB extends AbstractModule {
+		static volatile boolean configured;
+		@Override protected void configure() {
+			configured = true;
+		}
+	}
+	
+	public static class Module extends AbstractStoryModule {
+		@Override protected void configureStory() {}
+	}
+	
+}
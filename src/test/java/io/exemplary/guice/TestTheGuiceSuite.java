@@ -0,0 +1,172 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite.SuiteClasses;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.CreationException;
+
+@RunWith(StoryRunner.class) @Modules(TestTheGuiceSuite.Module.class)
+public class TestTheGuiceSuite {
+
+	private Result result;
+	
+	@Story
+	public void testTheGuiceSuite() throws Exception {
+		the_suite_runs_$1_classes_with_$2_failing_module(3, 1);
+		the_injector_of_the_next_class_is_built_in_background_while_the_first_class_runs();
+		the_suite_builds_in_background_only_the_injectors_of_the_next_$1_classes(1);
+		the_suite_releasing_the_injectors_builds_$1_injector_for_the_classes_with_the_same_modules(1);
+	}
+	
+	void the_suite_runs_$1_classes_with_$2_failing_module(int classes, int failures) {
+		result = new JUnitCore().run(Request.aClass(Pipeline.class));
+		assertEquals(classes - failures, result.getRunCount());
+		assertEquals(failures, result.getFailureCount());
+		assertTrue(result.getFailures().get(0).getException() instanceof CreationException);
+	}
+	
+	void the_injector_of_the_next_class_is_built_in_background_while_the_first_class_runs() {
+		assertNotEquals(Thread.currentThread().getName(), NextModule.thread);
+		assertTrue(NextModule.thread.startsWith(Pipeline.class.getName()));
+	}
+	
+	void the_suite_builds_in_background_only_the_injectors_of_the_next_$1_classes(int classes) {
+		System.setProperty(GuiceSuite.LOOKAHEAD, String.valueOf(classes));
+		try {
+			result = new JUnitCore().run(Request.aClass(Window.class));
+		} finally {
+			System.clearProperty(GuiceSuite.LOOKAHEAD);
+		}
+		assertTrue(result.wasSuccessful());
+		assertFalse("Built beyond the lookahead", InWindow.lastBuiltEarly);
+	}
+	
+	void the_suite_releasing_the_injectors_builds_$1_injector_for_the_classes_with_the_same_modules(int times) {
+		System.setProperty(GuiceSuite.LOOKAHEAD, "0");
+		TestRunner.setInjectorsRelease(true);
+		try {
+			result = new JUnitCore().run(Request.aClass(Released.class));
+		} finally {
+			TestRunner.setInjectorsRelease(false);
+			System.clearProperty(GuiceSuite.LOOKAHEAD);
+		}
+		assertTrue(result.wasSuccessful());
+		assertEquals(times, SharedModule.configured);
+	}
+	
+	@RunWith(GuiceSuite.class)
+	@SuiteClasses({ First.class, Failing.class, Next.class })
+	public static class Pipeline {}
+	
+	@RunWith(TestRunner.class) @Modules(FirstModule.class)
+	public static class First {
+		@Test public void runnable() throws InterruptedException {
+			Thread.sleep(300);
+		}
+	}
+	
+	@RunWith(TestRunner.class) @Modules(FailingModule.class)
+	public static class Failing {
+		@Test public void runnable() {}
+	}
+	
+	@RunWith(StoryRunner.class) @Modules(NextModule.class)
+	public static class Next {
+		@Story public void runnable() {}
+	}
+	
+	@RunWith(GuiceSuite.class)
+	@SuiteClasses({ InWindow.class, NextInWindow.class, LastInWindow.class })
+	public static class Window {}
+	
+	@RunWith(TestRunner.class) @Modules(FirstModule.class)
+	public static class InWindow {
+		static boolean lastBuiltEarly;
+		@Test public void runnable() throws InterruptedException {
+			Thread.sleep(300);
+			lastBuiltEarly = LastModule.configured;
+		}
+	}
+	
+	@RunWith(TestRunner.class) @Modules(NextModule.class)
+	public static class NextInWindow {
+		@Test public void runnable() {}
+	}
+	
+	@RunWith(TestRunner.class) @Modules(LastModule.class)
+	public static class LastInWindow {
+		@Test public void runnable() {}
+	}
+	
+	@RunWith(GuiceSuite.class)
+	@SuiteClasses({ FirstShared.class, NextInWindow.class, LastShared.class })
+	public static class Released {}
+	
+	@RunWith(TestRunner.class) @Modules(SharedModule.class)
+	public static class FirstShared {
+		@Test public void runnable() {}
+	}
+	
+	@RunWith(TestRunner.class) @Modules(SharedModule.class)
+	public static class LastShared {
+		@Test public void runnable() {}
+	}
+	
+	public static class SharedModule extends AbstractModule {
+		static int configured;
+		@Override protected void configure() {
+			configured++;
+		}
+	}
+	
+	public static class LastModule extends AbstractModule {
+		static volatile boolean configured;
+		@Override protected void configure() {
+			configured = true;
+		}
+	}
+	
+	public static class FirstModule extends AbstractModule {
+		@Override protected void configure() {}
+	}
+	
+	public static class FailingModule extends AbstractModule {
+		@Override protected void configure() {
+			throw new IllegalStateException("The module fails");
+		}
+	}
+	
+	public static class NextModule extends AbstractModule {
+		static volatile String thread;
+		@Override protected void configure() {
+			thread = Thread.currentThread().getName();
+		}
+	}
+	
+	public static class Module extends AbstractModule {
+		@Override protected void configure() {}
+	}
+	
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import static org.junit.Assert.*;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.RunWith;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.manipulation.NoTestsRemainException;
+import org.junit.runner.notification.RunNotifier;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Injector;
+import com.google.inject.Singleton;
+
+@RunWith(StoryRunner.class) @Modules(TestTheInjectorsCache.Module.class)
+public class TestTheInjectorsCache {
+
+	private final List<String> removed = new ArrayList<String>();
+	private final Registry.Listener<String> listener = new Registry.Listener<String>() {
+		@Override
+		public void onRemove(String key, String value) {
+			removed.add(value);
+		}
+	};
+	
+	@Story
+	public void testTheInjectorsCache() throws Exception {
+		the_registry_of_size_$1_removes_the_least_recently_used_value(1);
+		the_registry_never_removes_a_value_used_by_a_runner();
+		the_registry_releasing_the_unused_values_removes_a_value_when_the_last_runner_releases_it();
+		the_closeable_instances_created_by_the_injector_are_closed_with_it();
+		the_runners_hold_$1_references_to_the_injector_until_filtered_out_or_the_run_finishes(2);
+		the_running_runner_holds_$1_reference_to_the_injector_until_it_ends(1);
+		the_classes_run_one_after_another_release_the_injector_built_$1_time_after_the_last_class(1);
+	}
+	
+	void the_registry_of_size_$1_removes_the_least_recently_used_value(int size) throws Exception {
+		removed.clear();
+		Registry<String> registry = new Registry<String>(size, false, listener);
+		registry.release("first", registry.acquire("first", new Value("first")));
+		registry.release("second", registry.acquire("second", new Value("second")));
+		assertEquals(1, removed.size());
+		assertEquals("first", removed.get(0));
+	}
+	
+	void the_registry_never_removes_a_value_used_by_a_runner() throws Exception {
+		removed.clear();
+		Registry<String> registry = new Registry<String>(1, false, listener);
+		String first = registry.acquire("first", new Value("first"));
+		registry.release("second", registry.acquire("second", new Value("second")));
+		assertEquals(1, removed.size());
+		assertEquals("second", removed.get(0));
+		registry.release("first", first);
+		assertEquals(1, removed.size());
+	}
+	
+	void the_registry_releasing_the_unused_values_removes_a_value_when_the_last_runner_releases_it() throws Exception {
+		removed.clear();
+		Registry<String> registry = new Registry<String>(0, true, listener);
+		String first = registry.acquire("first", new Value("first"));
+		registry.acquire("first", new Value("first"));
+		registry.release("first", first);
+		assertTrue(removed.isEmpty());
+		registry.release("first", first);
+		assertEquals(1, removed.size());
+	}
+	
+	void the_closeable_instances_created_by_the_injector_are_closed_with_it() throws Exception {
+		Injector injector = new TestRunner(WithCloseable.class).getInjector();
+		Resource resource = injector.getInstance(Resource.class);
+		assertFalse(resource.closed);
+		Closeables.close(injector);
+		assertTrue(resource.closed);
+	}
+	
+	void the_runners_hold_$1_references_to_the_injector_until_filtered_out_or_the_run_finishes(int references) throws Exception {
+		TestRunner filtered = new TestRunner(WithReferences.class);
+		new TestRunner(WithReferences.class);
+		assertEquals(references, TestRunner.getInjectorReferences(filtered.getInjectorKey()));
+		try {
+			filtered.filter(new NoTests());
+			fail("No tests should remain");
+		} catch (NoTestsRemainException e) {
+			assertEquals(references - 1, TestRunner.getInjectorReferences(filtered.getInjectorKey()));
+		}
+		assertTrue(new JUnitCore().run(Other.class).wasSuccessful());
+		assertEquals(0, TestRunner.getInjectorReferences(filtered.getInjectorKey()));
+	}
+	
+	void the_running_runner_holds_$1_reference_to_the_injector_until_it_ends(int references) throws Exception {
+		TestRunner runner = new TestRunner(WithReferences.class);
+		runner.run(new RunNotifier());
+		assertEquals(references, WithReferences.references);
+		assertEquals(0, TestRunner.getInjectorReferences(runner.getInjectorKey()));
+	}
+	
+	void the_classes_run_one_after_another_release_the_injector_built_$1_time_after_the_last_class(int times) {
+		TestRunner.setInjectorsRelease(true);
+		try {
+			assertTrue(new JUnitCore().run(FirstReleased.class, SecondReleased.class).wasSuccessful());
+			assertEquals(times, ReleasedModule.configured);
+			assertTrue(new JUnitCore().run(FirstReleased.class).wasSuccessful());
+			assertEquals(times + 1, ReleasedModule.configured);
+		} finally {
+			TestRunner.setInjectorsRelease(false);
+		}
+	}
+	
+	private static class Value implements Registry.Builder<String> {
+		private final String value;
+		Value(String value) { this.value = value; }
+		@Override public String build() { return value; }
+	}
+	
+	@Modules(CloseableModule.class)
+	public static class WithCloseable {
+		@Test public void runnable() {}
+	}
+	
+	@Modules(ReferencesModule.class)
+	public static class WithReferences {
+		static volatile int references;
+		@Test public void runnable() throws Exception {
+			references = TestRunner.getInjectorReferences(TestRunner.getKey(TestRunner.getModulesAnnotation(WithReferences.class)));
+		}
+	}
+	
+	private static class NoTests extends Filter {
+		@Override public boolean shouldRun(Description description) { return false; }
+		@Override public String describe() { return "no tests"; }
+	}
+	
+	@RunWith(TestRunner.class) @Modules(Module.class)
+	public static class Other {
+		@Test public void runnable() {}
+	}
+	
+	@RunWith(TestRunner.class) @Modules(ReleasedModule.class)
+	public static class FirstReleased {
+		@Test public void runnable() {}
+	}
+	
+	@RunWith(TestRunner.class) @Modules(ReleasedModule.class)
+	public static class SecondReleased {
+		@Test public void runnable() {}
+	}
+	
+	public static class ReleasedModule extends AbstractModule {
+		static int configured;
+		@Override protected void configure() {
+			configured++;
+		}
+	}
+	
+	public static class ReferencesModule extends AbstractModule {
+		@Override protected void configure() {}
+	}
+	
+	@Singleton
+	public static class Resource implements Closeable {
+		volatile boolean closed;
+		@Override public void close() { closed = true; }
+	}
+	
+	public static class CloseableModule extends AbstractModule {
+		@Override protected void configure() {
+			bind(Resource.class);
+		}
+	}
+	
+	public static class Module extends AbstractModule {
+		@Override protected void configure() {}
+	}
+	
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.RunWith;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Inject;
+
+@RunWith(StoryRunner.class) @Modules(TestTheJsonStoryPrinter.Module.class)
+public class TestTheJsonStoryPrinter {
+
+	private static final File DIRECTORY = new File("target/json-story-printer");
+	private static final File FILE = new File(DIRECTORY, "story.jsonl");
+	
+	@Inject private AbstractStoryModule.StoryPrinter printer;
+	
+	@Story
+	public void testTheJsonStoryPrinter() throws Exception {
+		a_step_with_the_argument_$1("one");
+		try {
+			a_failing_step();
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+		the_printer_writes_a_line_for_every_event_of_the_story();
+		the_printer_writes_$1_events_in_more_than_$2_compressed_file_rolled_every_$3_bytes(100, 1, 4000);
+		two_classes_with_different_modules_share_the_printer_of_the_same_file();
+	}
+	
+	void a_step_with_the_argument_$1(String argument) {}
+	
+	void a_failing_step() {
+		throw new IllegalStateException("The step fails");
+	}
+	
+	void the_printer_writes_a_line_for_every_event_of_the_story() throws IOException {
+		((JsonStoryPrinter) printer).flush();
+		List<String> lines = read(FILE, false);
+		assertTrue(lines.get(0).startsWith("{\"type\":\"STORY_BEGINS\",\"class\":\"TestTheJsonStoryPrinter\",\"message\":\"Story \\\"Test the json story printer\\\"\""));
+		assertTrue(lines.get(1).startsWith("{\"type\":\"STEP_BEGINS\",\"class\":\"TestTheJsonStoryPrinter\",\"message\":\"A step with the argument \\\"one\\\"\",\"method\":\"a_step_with_the_argument_$1\",\"arguments\":[\"one\"],\"thread\":"));
+		assertTrue(lines.get(2).startsWith("{\"type\":\"STEP_ENDS\""));
+		assertTrue(lines.get(2).endsWith(",\"outcome\":\"success\"}"));
+		assertTrue(lines.get(4).startsWith("{\"type\":\"STEP_ENDS\""));
+		assertTrue(lines.get(4).endsWith(",\"outcome\":\"failure\",\"error\":\"java.lang.IllegalStateException: The step fails\"}"));
+	}
+	
+	void the_printer_writes_$1_events_in_more_than_$2_compressed_file_rolled_every_$3_bytes(int events, int files, int size) throws IOException {
+		File file = new File(DIRECTORY, "rolled.jsonl.gz");
+		JsonStoryPrinter printer = new JsonStoryPrinter(file, true, size);
+		for (int i = 0; i < events; i++) {
+			printer.onStepBegins("Rolled", "Step " + i + " with a message long enough to fill the file sooner");
+		}
+		printer.close();
+		int lines = read(file, true).size();
+		int roll = 1;
+		for (; JsonStoryPrinter.rolled(file, roll).exists(); roll++) {
+			lines += read(JsonStoryPrinter.rolled(file, roll), true).size();
+		}
+		assertTrue(roll > files);
+		assertEquals(events, lines);
+	}
+	
+	void two_classes_with_different_modules_share_the_printer_of_the_same_file() throws IOException {
+		writers.clear();
+		assertTrue(new JUnitCore().run(Request.aClass(FirstWriter.class)).wasSuccessful());
+		assertTrue(new JUnitCore().run(Request.aClass(SecondWriter.class)).wasSuccessful());
+		assertEquals(2, writers.size());
+		assertSame(writers.get(0), writers.get(1));
+		((JsonStoryPrinter) writers.get(0)).flush();
+		List<String> lines = read(SHARED, false);
+		assertEquals(4, lines.size());
+		assertTrue(lines.get(0).startsWith("{\"type\":\"STORY_BEGINS\",\"class\":\"FirstWriter\""));
+		assertTrue(lines.get(2).startsWith("{\"type\":\"STORY_BEGINS\",\"class\":\"SecondWriter\""));
+		for (String line : lines) {
+			assertTrue(line, line.endsWith("}"));
+		}
+	}
+	
+	private List<String> read(File file, boolean gzip) throws IOException {
+		InputStream input = new FileInputStream(file);
+		if (gzip) {
+			input = new GZIPInputStream(input);
+		}
+		BufferedReader reader = new BufferedReader(new InputStreamReader(input, "UTF-8"));
+		try {
+			List<String> lines = new ArrayList<String>();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+			return lines;
+		} finally {
+			reader.close();
+		}
+	}
+	
+	public static class Module extends AbstractStoryModule {
+		@Override protected void configureStory() {
+			bindJsonStoryPrinter(FILE);
+		}
+	}
+	
+	private static final File SHARED = new File(DIRECTORY, "shared.jsonl");
+	static final List<AbstractStoryModule.StoryPrinter> writers = new ArrayList<AbstractStoryModule.StoryPrinter>();
+	
+	@RunWith(StoryRunner.class) @Modules(SharedModule.class)
+	public static class FirstWriter {
+		@Inject private AbstractStoryModule.StoryPrinter printer;
+		@Story public void firstWriter() { writers.add(printer); }
+	}
+	
+	@RunWith(StoryRunner.class) @Modules({ SharedModule.class, OtherModule.class })
+	public static class SecondWriter {
+		@Inject private AbstractStoryModule.StoryPrinter printer;
+		@Story public void secondWriter() { writers.add(printer); }
+	}
+	
+	public static class SharedModule extends AbstractStoryModule {
+		@Override protected void configureStory() {
+			bindJsonStoryPrinter(SHARED);
+		}
+	}
+	
+	public static class OtherModule extends AbstractModule {
+		@Override protected void configure() {}
+	}
+	
+}
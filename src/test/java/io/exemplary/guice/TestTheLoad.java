@@ -0,0 +1,83 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+import org.junit.runner.notification.RunNotifier;
+
+import com.google.inject.Inject;
+import com.google.inject.Scopes;
+
+@RunWith(StoryRunner.class) @Modules(TestTheLoad.Module.class)
+public class TestTheLoad {
+
+	@Story
+	public void testTheLoad() throws Exception {
+		the_story_runs_$1_times_from_$2_threads_printed_once(1 + 10 * (1 + 2 + 4), 4);
+	}
+	
+	void the_story_runs_$1_times_from_$2_threads_printed_once(int times, int threads) throws Exception {
+		StoryRunner runner = new StoryRunner(Loaded.class);
+		Result result = new Result();
+		RunNotifier notifier = new RunNotifier();
+		notifier.addListener(result.createListener());
+		runner.run(notifier);
+		assertTrue(result.wasSuccessful());
+		StoryRecorder recorder = runner.getInjector().getInstance(StoryRecorder.class);
+		assertEquals(times, recorder.stories.size());
+		assertEquals(times, recorder.steps.get());
+		Set<Object> instances = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+		instances.addAll(recorder.stories);
+		assertTrue(instances.size() >= threads);
+		assertEquals(2, recorder.printed.size());
+	}
+	
+	@RunWith(StoryRunner.class) @Modules(LoadedModule.class)
+	public static class Loaded {
+		
+		@Inject private StoryRecorder recorder;
+		
+		@Story @Load(threads = {1, 2, 4}, iterations = 10)
+		public void aLoadedStory() {
+			recorder.storyRuns(this);
+			a_step();
+		}
+		
+		void a_step() {
+			recorder.stepRuns();
+		}
+		
+	}
+	
+	public static class Module extends AbstractStoryModule {
+		@Override protected void configureStory() {}
+	}
+	
+	public static class LoadedModule extends AbstractStoryModule {
+		@Override protected void configureStory() {
+			bind(StoryRecorder.class).in(Scopes.SINGLETON);
+			bindStoryPrinter(StoryRecorder.class);
+		}
+	}
+	
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Method;
+
+import org.junit.runner.RunWith;
+
+import com.google.inject.Inject;
+
+@RunWith(StoryRunner.class) @Modules(TestTheMethodMetadata.Module.class)
+public class TestTheMethodMetadata {
+
+	@Inject private MethodConverter.ReplaceArguments replaceArguments;
+	
+	@Story
+	public void testTheMethodMetadata() throws Exception {
+		Method method = TestTheMethodMetadata.class.getDeclaredMethod("a_step_with_$1_told_and_$2", String.class, String.class);
+		the_metadata_of_the_method_is_read_once(method);
+		the_tell_of_a_parameter_is_read_from_the_cache(method);
+		an_argument_out_of_the_parameters_fails_as_in_the_template();
+	}
+	
+	@Expected(value = IllegalStateException.class, message = "Expected .*")
+	void a_step_with_$1_told_and_$2(@Tell("told") String told, String plain) {}
+	
+	void the_metadata_of_the_method_is_read_once(Method method) {
+		MethodMetadata metadata = MethodMetadata.of(method);
+		assertSame(metadata, MethodMetadata.of(method));
+		assertNull(metadata.getStory());
+		assertFalse(metadata.isFinalize());
+		assertEquals(2, metadata.getParameters());
+		assertTrue(metadata.matchesExpectedMessage("Expected failure"));
+		assertFalse(metadata.matchesExpectedMessage("Unexpected failure"));
+	}
+	
+	void the_tell_of_a_parameter_is_read_from_the_cache(Method method) {
+		MethodMetadata metadata = MethodMetadata.of(method);
+		assertEquals("told", metadata.getTell(0).value());
+		assertNull(metadata.getTell(1));
+		assertNull(metadata.getTell(2));
+		assertNull(metadata.getTell(-1));
+		assertEquals("A step with told  told and \"plain\" ", replaceArguments.convert("A step with $1 told and $2", method, new Object[] { "one", "plain" }));
+	}
+	
+	void an_argument_out_of_the_parameters_fails_as_in_the_template() throws Exception {
+		Method method = TestTheMethodMetadata.class.getDeclaredMethod("the_argument_$1");
+		Object[] arguments = new Object[] { "extra" };
+		try {
+			replaceArguments.convert("the argument $1", method, arguments);
+			fail("The argument is not a parameter");
+		} catch (IllegalArgumentException e) {
+			try {
+				MethodTemplate.of(method).render(arguments);
+				fail("The argument is not a parameter");
+			} catch (IllegalArgumentException expected) {
+				assertEquals(expected.getMessage(), e.getMessage());
+			}
+		}
+	}
+	
+	void the_argument_$1() {}
+	
+	public static class Module extends AbstractStoryModule {
+		@Override protected void configureStory() {}
+	}
+	
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Method;
+
+import org.junit.runner.RunWith;
+
+import com.google.inject.Inject;
+
+@RunWith(StoryRunner.class) @Modules(TestTheMethodTemplate.Module.class)
+public class TestTheMethodTemplate {
+
+	@Inject private MethodConverter.SinglePass converter;
+	
+	@Story
+	public void testTheMethodTemplate() throws Exception {
+		Method method = TestTheMethodTemplate.class.getDeclaredMethod("the_step_of_$1_with_$2", Bean.class, int.class);
+		the_template_of_the_method_is_compiled_once_and_reused(method);
+		the_tell_of_the_parameter_is_compiled_once_and_reused(method);
+	}
+	
+	void the_step_of_$1_with_$2(@Tell("${name} of ${size}") Bean bean, int number) {}
+	
+	void the_template_of_the_method_is_compiled_once_and_reused(Method method) {
+		MethodTemplate template = MethodTemplate.of(method);
+		assertSame(template, MethodTemplate.of(method));
+		assertEquals("The step of \"one\" of 1 with 2", converter.convert(method.getName(), method, new Object[] { new Bean("one", 1), 2 }));
+		assertEquals("The step of \"two\" of 2 with 3", converter.convert(method.getName(), method, new Object[] { new Bean("two", 2), 3 }));
+		assertSame(template, MethodTemplate.of(method));
+	}
+	
+	void the_tell_of_the_parameter_is_compiled_once_and_reused(Method method) {
+		TellTemplate tell = MethodMetadata.of(method).getTellTemplate(0);
+		assertSame(tell, MethodMetadata.of(method).getTellTemplate(0));
+		assertNull(MethodMetadata.of(method).getTellTemplate(1));
+		assertEquals("\"three\" of 3", tell.format(new Bean("three", 3), null));
+		assertEquals("\"four\" of " + MethodConverter.ReplaceArguments.FIELD_NOT_FOUND, tell.format(new Named("four"), null));
+		assertEquals(MethodConverter.ReplaceArguments.FIELD_NOT_FOUND + " of " + MethodConverter.ReplaceArguments.FIELD_NOT_FOUND, tell.format(null, null));
+	}
+	
+	static class Bean {
+		private final String name;
+		private final int size;
+		Bean(String name, int size) { this.name = name; this.size = size; }
+	}
+	
+	static class Named {
+		private final String name;
+		Named(String name) { this.name = name; }
+	}
+	
+	public static class Module extends AbstractStoryModule {
+		@Override protected void configureStory() {}
+	}
+	
+}
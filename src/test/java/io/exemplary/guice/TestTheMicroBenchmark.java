@@ -0,0 +1,98 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import static org.junit.Assert.*;
+
+import org.junit.runner.Description;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.notification.RunNotifier;
+
+import com.google.inject.Inject;
+import com.google.inject.Scopes;
+
+@RunWith(StoryRunner.class) @Modules(TestTheMicroBenchmark.Module.class)
+public class TestTheMicroBenchmark {
+
+	@Story
+	public void testTheMicroBenchmark() throws Exception {
+		the_benchmark_runs_the_story_$1_times_printing_it_once(2 + 5);
+		the_benchmark_fails_over_its_threshold();
+	}
+	
+	void the_benchmark_runs_the_story_$1_times_printing_it_once(int times) throws Exception {
+		StoryRunner runner = new StoryRunner(Benchmarked.class);
+		Result result = run(runner, "aBenchmarkedStory");
+		assertTrue(result.wasSuccessful());
+		StoryRecorder recorder = runner.getInjector().getInstance(StoryRecorder.class);
+		assertEquals(times, recorder.stories.size());
+		assertEquals(times, recorder.steps.get());
+		assertEquals(2, recorder.printed.size());
+		assertEquals("Story \"A benchmarked story\"", recorder.printed.get(0));
+		assertEquals("A step", recorder.printed.get(1));
+	}
+	
+	void the_benchmark_fails_over_its_threshold() throws Exception {
+		Result result = run(new StoryRunner(Benchmarked.class), "aSlowBenchmarkedStory");
+		assertEquals(1, result.getFailureCount());
+		assertTrue(result.getFailures().get(0).getMessage().matches("The p50 of Benchmarked.aSlowBenchmarkedStory is \\d+ us, over its threshold of 1000 us"));
+	}
+	
+	private Result run(TestRunner runner, String story) throws Exception {
+		runner.filter(Filter.matchMethodDescription(Description.createTestDescription(Benchmarked.class, story)));
+		Result result = new Result();
+		RunNotifier notifier = new RunNotifier();
+		notifier.addListener(result.createListener());
+		runner.run(notifier);
+		return result;
+	}
+	
+	@RunWith(StoryRunner.class) @Modules(BenchmarkedModule.class)
+	public static class Benchmarked {
+		
+		@Inject private StoryRecorder recorder;
+		
+		@Story @MicroBenchmark(warmup = 2, iterations = 5)
+		public void aBenchmarkedStory() {
+			recorder.storyRuns(this);
+			a_step();
+		}
+		
+		void a_step() {
+			recorder.stepRuns();
+		}
+		
+		@Story @MicroBenchmark(warmup = 0, iterations = 2, threshold = 1, percentile = 50)
+		public void aSlowBenchmarkedStory() throws InterruptedException {
+			Thread.sleep(5);
+		}
+		
+	}
+	
+	public static class Module extends AbstractStoryModule {
+		@Override protected void configureStory() {}
+	}
+	
+	public static class BenchmarkedModule extends AbstractStoryModule {
+		@Override protected void configureStory() {
+			bind(StoryRecorder.class).in(Scopes.SINGLETON);
+			bindStoryPrinter(StoryRecorder.class);
+		}
+	}
+	
+}
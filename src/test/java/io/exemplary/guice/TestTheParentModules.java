@@ -0,0 +1,168 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import static org.junit.Assert.*;
+
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.google.inject.name.Names;
+
+@RunWith(StoryRunner.class) @Modules(value = TestTheParentModules.FeatureModule.class, parent = TestTheParentModules.ParentModule.class)
+public class TestTheParentModules {
+
+	@Inject @Named("parent") private String parent;
+	@Inject @Named("feature") private String feature;
+	
+	@Story
+	public void testTheParentModules() throws Exception {
+		the_test_class_is_injected_by_the_$1_and_the_$2_modules("parent", "feature");
+		the_test_class_is_still_intercepted_by_the_child_modules();
+		the_classes_with_the_same_parent_modules_share_$1_parent_injector(1);
+		the_test_interceptors_of_the_parent_modules_run_$1_times_before_the_creation_of_$1_classes(2);
+		the_closeable_instances_of_the_parent_and_of_its_$1_children_are_closed_once_by_their_injector(2);
+	}
+	
+	void the_test_class_is_injected_by_the_$1_and_the_$2_modules(String parent, String feature) {
+		assertEquals(parent, this.parent);
+		assertEquals(feature, this.feature);
+	}
+	
+	void the_test_class_is_still_intercepted_by_the_child_modules() {
+		assertNotSame(TestTheParentModules.class, getClass());
+	}
+	
+	void the_classes_with_the_same_parent_modules_share_$1_parent_injector(int injectors) throws Exception {
+		Injector first = new TestRunner(WithFirstFeature.class).getInjector();
+		Injector second = new TestRunner(WithSecondFeature.class).getInjector();
+		assertNotSame(first, second);
+		assertSame(first.getParent().getParent(), second.getParent().getParent());
+		assertEquals(injectors, HeavyModule.creationCounter.get());
+	}
+	
+	void the_test_interceptors_of_the_parent_modules_run_$1_times_before_the_creation_of_$1_classes(int times) {
+		assertEquals(times, Interceptor.counter.get());
+	}
+	
+	void the_closeable_instances_of_the_parent_and_of_its_$1_children_are_closed_once_by_their_injector(int children) throws Exception {
+		TestRunner first = new TestRunner(WithFirstResource.class);
+		TestRunner second = new TestRunner(WithSecondResource.class);
+		Resource parentResource = first.getInjector().getInstance(ParentResource.class);
+		Resource firstResource = first.getInjector().getInstance(FirstResource.class);
+		Resource secondResource = second.getInjector().getInstance(SecondResource.class);
+		assertSame(parentResource, second.getInjector().getInstance(ParentResource.class));
+		TestRunner.removeInjector(first.getInjectorKey());
+		assertEquals(1, firstResource.closed.get());
+		assertEquals(0, parentResource.closed.get());
+		TestRunner.removeParentInjector(ShardFilter.rootKey(first.getInjectorKey()));
+		assertEquals(1, parentResource.closed.get());
+		assertEquals(0, secondResource.closed.get());
+		TestRunner.removeInjector(second.getInjectorKey());
+		assertEquals(1, firstResource.closed.get());
+		assertEquals(1, parentResource.closed.get());
+		assertEquals(1, secondResource.closed.get());
+	}
+	
+	@Modules(value = FeatureModule.class, parent = HeavyModule.class)
+	public static class WithFirstFeature {
+		@Test public void runnable() {}
+	}
+	
+	@Modules(value = { HeavyModule.class, SecondFeatureModule.class }, parent = HeavyModule.class)
+	public static class WithSecondFeature {
+		@Test public void runnable() {}
+	}
+	
+	@Modules(value = FirstResourceModule.class, parent = ResourceModule.class)
+	public static class WithFirstResource {
+		@Test public void runnable() {}
+	}
+	
+	@Modules(value = SecondResourceModule.class, parent = ResourceModule.class)
+	public static class WithSecondResource {
+		@Test public void runnable() {}
+	}
+	
+	static class Resource implements Closeable {
+		final AtomicInteger closed = new AtomicInteger();
+		@Override public void close() { closed.incrementAndGet(); }
+	}
+	
+	@Singleton static class ParentResource extends Resource {}
+	
+	@Singleton static class FirstResource extends Resource {}
+	
+	@Singleton static class SecondResource extends Resource {}
+	
+	public static class ResourceModule extends AbstractModule {
+		@Override protected void configure() {
+			bind(ParentResource.class);
+		}
+	}
+	
+	public static class FirstResourceModule extends AbstractModule {
+		@Override protected void configure() {
+			bind(FirstResource.class);
+		}
+	}
+	
+	public static class SecondResourceModule extends AbstractModule {
+		@Override protected void configure() {
+			bind(SecondResource.class);
+		}
+	}
+	
+	public static class HeavyModule extends AbstractTestModule {
+		static final AtomicInteger creationCounter = new AtomicInteger();
+		@Override protected void configureTest() {
+			creationCounter.incrementAndGet();
+			bindTestInterceptor(Interceptor.class);
+		}
+	}
+	
+	public static class Interceptor extends TestInterceptor {
+		static final AtomicInteger counter = new AtomicInteger();
+		@Override public void beforeClassCreation(Class<?> classToRun) {
+			counter.incrementAndGet();
+		}
+	}
+	
+	public static class ParentModule extends AbstractModule {
+		@Override protected void configure() {
+			bindConstant().annotatedWith(Names.named("parent")).to("parent");
+		}
+	}
+	
+	public static class FeatureModule extends AbstractModule {
+		@Override protected void configure() {
+			bindConstant().annotatedWith(Names.named("feature")).to("feature");
+		}
+	}
+	
+	public static class SecondFeatureModule extends AbstractModule {
+		@Override protected void configure() {}
+	}
+	
+}
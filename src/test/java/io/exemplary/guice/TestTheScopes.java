@@ -0,0 +1,170 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import static org.junit.Assert.*;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+
+@RunWith(StoryRunner.class) @Modules(TestTheScopes.Module.class)
+public class TestTheScopes {
+
+	@Story
+	public void testTheScopes() {
+		the_tests_of_a_class_run_with_scoped_instances();
+		every_test_gets_its_own_instance_closed_when_it_ends();
+		the_tests_of_the_class_share_its_instance_closed_after_the_last_test();
+		the_class_hooks_share_the_instance_of_the_class();
+		the_singletons_stay_in_the_injector();
+		every_story_gets_its_own_instance_closed_when_it_ends();
+	}
+	
+	void the_tests_of_a_class_run_with_scoped_instances() {
+		Result result = new JUnitCore().run(Request.aClass(ScopedTests.class));
+		assertTrue(result.getFailures().toString(), result.wasSuccessful());
+		result = new JUnitCore().run(Request.aClass(ScopedStories.class));
+		assertTrue(result.getFailures().toString(), result.wasSuccessful());
+		result = new JUnitCore().run(Request.aClass(ScopedHooks.class));
+		assertTrue(result.getFailures().toString(), result.wasSuccessful());
+	}
+	
+	void every_test_gets_its_own_instance_closed_when_it_ends() {
+		assertEquals(3, perTest.size());
+		for (PerTest instance : perTest) {
+			assertTrue(instance.closed);
+		}
+	}
+	
+	void the_tests_of_the_class_share_its_instance_closed_after_the_last_test() {
+		assertEquals(1, perClass.size());
+		assertTrue(perClass.iterator().next().closed);
+	}
+	
+	void the_class_hooks_share_the_instance_of_the_class() {
+		assertSame(ScopedHooks.beforeClass, ScopedHooks.afterClass);
+		assertTrue(ScopedHooks.beforeClass.closed);
+	}
+	
+	void the_singletons_stay_in_the_injector() {
+		assertEquals(1, heavy.size());
+		assertFalse(heavy.iterator().next().closed);
+	}
+	
+	void every_story_gets_its_own_instance_closed_when_it_ends() {
+		assertEquals(2, perStory.size());
+		for (PerStory instance : perStory) {
+			assertTrue(instance.closed);
+		}
+	}
+	
+	static final Set<PerTest> perTest = Collections.synchronizedSet(new LinkedHashSet<PerTest>());
+	static final Set<PerClass> perClass = Collections.synchronizedSet(new LinkedHashSet<PerClass>());
+	static final Set<Heavy> heavy = Collections.synchronizedSet(new LinkedHashSet<Heavy>());
+	static final Set<PerStory> perStory = Collections.synchronizedSet(new LinkedHashSet<PerStory>());
+	
+	@RunWith(TestRunner.class) @Modules(ScopedModule.class)
+	public static class ScopedTests {
+		@Inject private PerTest first;
+		@Inject private PerTest second;
+		@Inject private PerClass perClass;
+		@Inject private Heavy heavy;
+		@Test public void first() { runnable(); }
+		@Test public void second() { runnable(); }
+		@Test public void third() { runnable(); }
+		private void runnable() {
+			assertSame(first, second);
+			assertFalse(first.closed);
+			assertFalse(perClass.closed);
+			TestTheScopes.perTest.add(first);
+			TestTheScopes.perClass.add(perClass);
+			TestTheScopes.heavy.add(heavy);
+		}
+	}
+	
+	@RunWith(TestRunner.class) @Modules(HooksModule.class)
+	public static class ScopedHooks {
+		@Inject private static Provider<PerClass> perClass;
+		static PerClass beforeClass;
+		static PerClass afterClass;
+		@BeforeClass public static void beforeClass() {
+			beforeClass = perClass.get();
+		}
+		@Test public void runnable() {
+			assertSame(beforeClass, perClass.get());
+		}
+		@AfterClass public static void afterClass() {
+			afterClass = perClass.get();
+			assertFalse(afterClass.closed);
+		}
+	}
+	
+	public static class HooksModule extends AbstractModule {
+		@Override protected void configure() {
+			requestStaticInjection(ScopedHooks.class);
+		}
+	}
+	
+	@RunWith(StoryRunner.class) @Modules(Module.class)
+	public static class ScopedStories {
+		@Inject private Provider<PerStory> perStory;
+		@Story public void firstStory() { the_steps_share_the_instance_of_the_story(); }
+		@Story public void secondStory() { the_steps_share_the_instance_of_the_story(); }
+		void the_steps_share_the_instance_of_the_story() {
+			PerStory instance = perStory.get();
+			assertSame(instance, perStory.get());
+			assertFalse(instance.closed);
+			TestTheScopes.perStory.add(instance);
+		}
+	}
+	
+	public static class ScopedModule extends AbstractModule {
+		@Override protected void configure() {}
+	}
+	
+	public static class Module extends AbstractStoryModule {
+		@Override protected void configureStory() {}
+	}
+	
+	static class Resource implements Closeable {
+		volatile boolean closed;
+		@Override public void close() { closed = true; }
+	}
+	
+	@TestScoped static class PerTest extends Resource {}
+	
+	@ClassScoped static class PerClass extends Resource {}
+	
+	@StoryScoped static class PerStory extends Resource {}
+	
+	@Singleton static class Heavy extends Resource {}
+	
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+import org.junit.runners.Suite.SuiteClasses;
+
+import com.google.inject.AbstractModule;
+
+@RunWith(StoryRunner.class) @Modules(TestTheShardFilter.Module.class)
+public class TestTheShardFilter {
+
+	@Story
+	public void testTheShardFilter() throws Exception {
+		the_classes_sharing_a_parent_injector_run_in_the_same_shard();
+		the_longest_keys_are_balanced_across_$1_shards(2);
+		the_runner_of_another_shard_neither_reports_the_tests_nor_builds_the_injector();
+		the_durations_are_merged_in_the_file();
+		the_nested_suite_runs_only_the_classes_of_the_shard();
+	}
+	
+	void the_classes_sharing_a_parent_injector_run_in_the_same_shard() {
+		ShardFilter filter = new ShardFilter(1, 7, new HashMap<String, Long>());
+		assertEquals(filter.getShard("[Parent]"), filter.getShard("[Parent] > [First]"));
+		assertEquals(filter.getShard("[Parent]"), filter.getShard("[Parent] > [Second]"));
+	}
+	
+	void the_longest_keys_are_balanced_across_$1_shards(int shards) {
+		Map<String, Long> durations = new HashMap<String, Long>();
+		durations.put("[A]", 100L);
+		durations.put("[B]", 60L);
+		durations.put("[C]", 50L);
+		durations.put("[D]", 10L);
+		ShardFilter filter = new ShardFilter(1, shards, durations);
+		assertEquals(1, filter.getShard("[A]"));
+		assertEquals(2, filter.getShard("[B]"));
+		assertEquals(2, filter.getShard("[C]"));
+		assertEquals(1, filter.getShard("[D]"));
+	}
+	
+	void the_runner_of_another_shard_neither_reports_the_tests_nor_builds_the_injector() throws Exception {
+		int shard = new ShardFilter(1, 2, new HashMap<String, Long>()).getShard(TestRunner.getKey(Sharded.class.getAnnotation(Modules.class)));
+		System.setProperty(ShardFilter.SHARD, (3 - shard) + "/2");
+		try {
+			Request request = Request.aClass(Sharded.class);
+			assertTrue(request.getRunner().getDescription().getChildren().isEmpty());
+			Result result = new JUnitCore().run(request);
+			assertEquals(0, result.getRunCount());
+			assertEquals(0, ShardedModule.configured);
+		} finally {
+			System.clearProperty(ShardFilter.SHARD);
+		}
+	}
+	
+	void the_durations_are_merged_in_the_file() throws IOException {
+		File file = new File("target/shard-filter/durations.properties");
+		file.getParentFile().mkdirs();
+		Properties previous = new Properties();
+		previous.setProperty("[Merged]", "1");
+		previous.setProperty("[Other]", "3");
+		OutputStream output = new FileOutputStream(file);
+		try {
+			previous.store(output, null);
+		} finally {
+			output.close();
+		}
+		ShardFilter.Durations durations = new ShardFilter.Durations();
+		durations.add("[Merged] > [Child]", 5000000);
+		durations.add("[Merged]", 2000000);
+		durations.write(file);
+		Properties properties = load(file);
+		assertEquals("7", properties.getProperty("[Merged]"));
+		assertEquals("3", properties.getProperty("[Other]"));
+	}
+	
+	void the_nested_suite_runs_only_the_classes_of_the_shard() throws Exception {
+		Map<String, Long> durations = new HashMap<String, Long>();
+		durations.put(TestRunner.getKey(InFirstShard.class.getAnnotation(Modules.class)), 100L);
+		durations.put(ShardedSuite.class.getName(), 60L);
+		durations.put(TestRunner.getKey(InSecondShard.class.getAnnotation(Modules.class)), 50L);
+		Result result = new JUnitCore().run(Request.aClass(OuterSuite.class).filterWith(new ShardFilter(1, 2, durations)));
+		assertTrue(result.wasSuccessful());
+		assertEquals(1, result.getRunCount());
+		assertTrue(InFirstShard.run);
+	}
+	
+	private static Properties load(File file) throws IOException {
+		Properties properties = new Properties();
+		InputStream input = new FileInputStream(file);
+		try {
+			properties.load(input);
+		} finally {
+			input.close();
+		}
+		return properties;
+	}
+	
+	@RunWith(TestRunner.class) @Modules(ShardedModule.class)
+	public static class Sharded {
+		@Test public void runnable() {}
+	}
+	
+	@RunWith(Suite.class)
+	@SuiteClasses(ShardedSuite.class)
+	public static class OuterSuite {}
+	
+	@RunWith(Suite.class)
+	@SuiteClasses({ InFirstShard.class, InSecondShard.class })
+	public static class ShardedSuite {}
+	
+	@RunWith(TestRunner.class) @Modules(FirstShardModule.class)
+	public static class InFirstShard {
+		static boolean run;
+		@Test public void runnable() {
+			run = true;
+		}
+	}
+	
+	@RunWith(TestRunner.class) @Modules(SecondShardModule.class)
+	public static class InSecondShard {
+		@Test public void runnable() {}
+	}
+	
+	public static class FirstShardModule extends AbstractModule {
+		@Override protected void configure() {}
+	}
+	
+	public static class SecondShardModule extends AbstractModule {
+		@Override protected void configure() {}
+	}
+	
+	public static class ShardedModule extends AbstractModule {
+		static int configured;
+		@Override protected void configure() {
+			configured++;
+		}
+	}
+	
+	public static class Module extends AbstractStoryModule {
+		@Override protected void configureStory() {}
+	}
+	
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.runner.RunWith;
+
+import com.google.inject.Inject;
+
+@RunWith(StoryRunner.class) @Modules(TestTheSinglePassConverter.Module.class)
+public class TestTheSinglePassConverter {
+
+	@Inject private MethodConverter.Global global;
+	@Inject private MethodConverter.SinglePass singlePass;
+	
+	@Story
+	public void testTheSinglePassConverter() throws Exception {
+		for (Method method : Messages.class.getDeclaredMethods()) {
+			if (!method.isSynthetic()) {
+				the_method_$1_is_converted_as_the_converters_chain_does(method);
+			}
+		}
+		the_message_$1_is_converted_as_the_converters_chain_does("A free__text_$1 withCamelCase");
+		the_message_$1_is_converted_as_the_converters_chain_does("   ");
+	}
+	
+	void the_method_$1_is_converted_as_the_converters_chain_does(@Tell("${name}") Method method) {
+		for (Object[] arguments : arguments(method)) {
+			String expected = global.convert(method.getName(), method, arguments);
+			assertEquals(method.getName() + " " + Arrays.deepToString(arguments), expected, singlePass.convert(method.getName(), method, arguments));
+			// The template compiled the first time converts the same
+			assertEquals(expected, singlePass.convert(method.getName(), method, arguments));
+		}
+	}
+	
+	void the_message_$1_is_converted_as_the_converters_chain_does(String message) {
+		assertEquals(global.convert(message, null, new Object[0]), singlePass.convert(message, null, new Object[0]));
+	}
+	
+	/**
+	 * @return the arguments of the method, none,
+	 * one less and one more than the parameters.
+	 */
+	private static Object[][] arguments(Method method) {
+		Class<?>[] types = method.getParameterTypes();
+		Object[] arguments = new Object[types.length];
+		for (int i = 0; i < types.length; i++) {
+			arguments[i] = argument(types[i], i);
+		}
+		Object[] fewer = Arrays.copyOf(arguments, Math.max(0, arguments.length - 1));
+		Object[] more = Arrays.copyOf(arguments, arguments.length + 1);
+		more[arguments.length] = "extra";
+		return new Object[][] { arguments, fewer, more, new Object[0] };
+	}
+	
+	private static Object argument(Class<?> type, int index) {
+		if (type == int.class) {
+			return index + 1;
+		} else if (type == String[].class) {
+			return new String[] { "one", "two", "three" };
+		} else if (type == Date.class) {
+			return new Date(0);
+		} else if (type == Bean.class) {
+			return new Bean("bean " + index);
+		} else if (type == Object.class) {
+			return null;
+		} else {
+			return "argument " + index;
+		}
+	}
+	
+	static class Messages {
+		void a_simple_step() {}
+		void aCamelCaseStep() {}
+		void a_MixedCase_Step_withUnderscores() {}
+		void a_step__with_a_comma() {}
+		void a_step___with___odd_underscores() {}
+		void a_step_with_$1_and_$2(String string, int number) {}
+		void $1_starts_the_step(String string) {}
+		void the_step_ends_with_$1(String string) {}
+		void a_step_with_$1$2_together(String first, String second) {}
+		void a_step_with_$2_before_$1(String first, String second) {}
+		void a_step_told_by_$1(@Tell("the bean ${name} and ${missing}") Bean bean) {}
+		void a_step_with_a_date_$1_and_$2(Date date, Object nothing) {}
+		void a_step_with_varargs_$1(String... values) {}
+		void a_step_with_an_argument_$3_out_of_bound(String string) {}
+		void a_step_with_$0_as_argument(String string) {}
+		void a_step_with_a_dollar_$_alone() {}
+		void a_step_with_$99999999999_as_argument(String string) {}
+		void $1() {}
+		void Î_starts_with_a_capital_letter() {}
+	}
+	
+	static class Bean {
+		private final String name;
+		Bean(String name) { this.name = name; }
+		@Override public String toString() { return name; }
+	}
+	
+	public static class Module extends AbstractStoryModule {
+		@Override protected void configureStory() {}
+	}
+	
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runner.RunWith;
+import org.junit.runners.model.InitializationError;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.Stage;
+
+@RunWith(StoryRunner.class) @Modules(TestTheStageOfTheInjector.Module.class)
+public class TestTheStageOfTheInjector {
+
+	@Story
+	public void testTheStageOfTheInjector() throws Exception {
+		the_injector_in_$1_stage_creates_$2_singletons(Stage.DEVELOPMENT, 0);
+		the_injector_in_$1_stage_creates_$2_singletons(Stage.PRODUCTION, 1);
+		the_injector_in_$1_stage_ignores_the_tests(Stage.TOOL);
+		the_injector_in_$1_stage_fails_when_the_test_class_cannot_be_injected(Stage.TOOL);
+	}
+	
+	void the_injector_in_$1_stage_creates_$2_singletons(Stage stage, int singletons) throws Exception {
+		new TestRunner(stage == Stage.PRODUCTION ? InProduction.class : InDevelopment.class);
+		assertEquals(singletons, Resource.creationCounter.get());
+	}
+	
+	void the_injector_in_$1_stage_ignores_the_tests(Stage stage) throws Exception {
+		final AtomicInteger ignored = new AtomicInteger();
+		RunNotifier notifier = new RunNotifier();
+		notifier.addListener(new RunListener() {
+			@Override
+			public void testIgnored(Description description) {
+				ignored.incrementAndGet();
+			}
+			@Override
+			public void testFailure(Failure failure) {
+				fail(failure.getMessage());
+			}
+		});
+		new TestRunner(InTool.class).run(notifier);
+		assertEquals(1, ignored.get());
+		assertEquals(0, InTool.creationCounter.get());
+	}
+	
+	void the_injector_in_$1_stage_fails_when_the_test_class_cannot_be_injected(Stage stage) {
+		try {
+			new TestRunner(InToolWithMissingBinding.class);
+			fail("The binding of the test class is not validated");
+		} catch (InitializationError e) {
+			assertEquals(1, e.getCauses().size());
+		}
+	}
+	
+	@Modules(ResourceModule.class)
+	public static class InDevelopment {
+		@Test public void runnable() {}
+	}
+	
+	@Modules(value = ResourceModule.class, stage = Stage.PRODUCTION)
+	public static class InProduction {
+		@Test public void runnable() {}
+	}
+	
+	@Modules(value = ResourceModule.class, stage = Stage.TOOL)
+	public static class InTool {
+		static final AtomicInteger creationCounter = new AtomicInteger();
+		public InTool() { creationCounter.incrementAndGet(); }
+		@Test public void runnable() {}
+	}
+	
+	@Modules(value = Module.class, stage = Stage.TOOL)
+	public static class InToolWithMissingBinding {
+		@Inject public InToolWithMissingBinding(Missing missing) {}
+		@Test public void runnable() {}
+	}
+	
+	public static interface Missing {}
+	
+	@Singleton
+	public static class Resource {
+		static final AtomicInteger creationCounter = new AtomicInteger();
+		public Resource() { creationCounter.incrementAndGet(); }
+	}
+	
+	public static class ResourceModule extends AbstractModule {
+		@Override protected void configure() {
+			bind(Resource.class);
+		}
+	}
+	
+	public static class Module extends AbstractModule {
+		@Override protected void configure() {}
+	}
+	
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.google.inject.AbstractModule;
+
+import io.exemplary.guice.StartupListener.Phase;
+
+@RunWith(StoryRunner.class) @Modules(TestTheStartupInstrumentation.Module.class)
+public class TestTheStartupInstrumentation {
+
+	private final List<Phase> phases = Collections.synchronizedList(new ArrayList<Phase>());
+	private final StartupSummary summary = new StartupSummary(new File("startup.json"));
+	private final StartupListener listener = new StartupListener() {
+		@Override
+		public void onPhase(Class<?> testClass, String key, Phase phase, long nanos) {
+			if (testClass.equals(Instrumented.class)) {
+				phases.add(phase);
+			}
+		}
+	};
+	
+	@Story
+	public void testTheStartupInstrumentation() throws Exception {
+		TestRunner.addStartupListener(listener);
+		TestRunner.addStartupListener(summary);
+		try {
+			the_first_runner_of_a_class_times_the_phases(Phase.MODULES, Phase.INJECTOR, Phase.CACHE_MISS, Phase.INTERCEPTORS, Phase.BEFORE_CLASS_CREATION, Phase.TEST_CREATION);
+			the_second_runner_of_the_class_times_the_phases(Phase.CACHE_HIT, Phase.INTERCEPTORS, Phase.BEFORE_CLASS_CREATION);
+			the_summary_lists_the_$1_phases_of_the_class(Instrumented.class);
+		} finally {
+			TestRunner.removeStartupListener(listener);
+			TestRunner.removeStartupListener(summary);
+		}
+	}
+	
+	void the_first_runner_of_a_class_times_the_phases(Phase ... expected) throws Exception {
+		new TestRunner(Instrumented.class).createTest();
+		assertEquals(Arrays.asList(expected), phases);
+	}
+	
+	void the_second_runner_of_the_class_times_the_phases(Phase ... expected) throws Exception {
+		phases.clear();
+		new TestRunner(Instrumented.class);
+		assertEquals(Arrays.asList(expected), phases);
+	}
+	
+	void the_summary_lists_the_$1_phases_of_the_class(Class<?> testClass) {
+		String json = summary.toJson();
+		assertTrue(json.contains("{\"class\":\"" + testClass.getName() + "\",\"key\":\"[" + InstrumentedModule.class + "]\""));
+		assertTrue(json.contains("\"CACHE_MISS\":{\"count\":1,"));
+		assertTrue(json.contains("\"CACHE_HIT\":{\"count\":1,"));
+	}
+	
+	@Modules(InstrumentedModule.class)
+	public static class Instrumented {
+		@Test public void runnable() {}
+	}
+	
+	public static class InstrumentedModule extends AbstractModule {
+		@Override protected void configure() {}
+	}
+	
+	public static class Module extends AbstractModule {
+		@Override protected void configure() {}
+	}
+	
+}
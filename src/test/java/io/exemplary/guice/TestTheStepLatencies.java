@@ -0,0 +1,70 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.runner.RunWith;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Inject;
+
+@RunWith(StoryRunner.class) @Modules(TestTheStepLatencies.Module.class)
+public class TestTheStepLatencies {
+
+	@Inject private StepLatencies latencies;
+	
+	@Story
+	public void testTheStepLatencies() throws Exception {
+		a_step_sleeping_$1_milliseconds(5);
+		a_step_sleeping_$1_milliseconds(5);
+		a_step_sleeping_$1_milliseconds(5);
+		the_latencies_of_the_sleeping_step_count_$1_durations_of_at_least_$2_milliseconds(3, 5);
+		the_histogram_of_$1_random_durations_has_the_percentiles_within_$2_percent(100000, 3);
+	}
+	
+	void a_step_sleeping_$1_milliseconds(int milliseconds) throws InterruptedException {
+		Thread.sleep(milliseconds);
+	}
+	
+	void the_latencies_of_the_sleeping_step_count_$1_durations_of_at_least_$2_milliseconds(int count, int milliseconds) throws Exception {
+		Histogram histogram = latencies.get(TestTheStepLatencies.class.getDeclaredMethod("a_step_sleeping_$1_milliseconds", int.class));
+		assertEquals(count, histogram.getCount());
+		assertTrue(histogram.getMin() >= milliseconds * 1000000L);
+		assertTrue(histogram.getPercentile(50) >= histogram.getMin());
+		assertTrue(histogram.getPercentile(99.9) <= histogram.getMax());
+	}
+	
+	void the_histogram_of_$1_random_durations_has_the_percentiles_within_$2_percent(int count, int percent) {
+		Histogram histogram = new Histogram();
+		Random random = new Random(42);
+		for (int i = 0; i < count; i++) {
+			histogram.record(random.nextInt(1000000000));
+		}
+		assertEquals(count, histogram.getCount());
+		for (double percentile : new double[] { 50, 90, 99, 99.9 }) {
+			double expected = percentile / 100 * 1000000000;
+			assertEquals(expected, histogram.getPercentile(percentile), expected * percent / 100);
+		}
+	}
+	
+	public static class Module extends AbstractModule {
+		@Override protected void configure() {}
+	}
+	
+}
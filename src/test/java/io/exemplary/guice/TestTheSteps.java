@@ -0,0 +1,120 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+
+import com.google.inject.Inject;
+import com.google.inject.Scopes;
+
+@RunWith(StoryRunner.class) @Modules(TestTheSteps.Module.class)
+public class TestTheSteps {
+
+	@Inject private StepsRecorder recorder;
+	
+	@Story
+	public void testTheSteps() {
+		a_step_calling_the_helper_$1_times(3);
+		only_the_stories_and_the_steps_are_printed();
+		the_subclasses_print_only_the_stories_and_the_steps_of_the_hierarchy();
+	}
+	
+	@Step
+	void a_step_calling_the_helper_$1_times(int times) {
+		for (int i = 0; i < times; i++) {
+			helper(i);
+		}
+	}
+	
+	int helper(int value) {
+		return value + 1;
+	}
+	
+	@Step
+	void only_the_stories_and_the_steps_are_printed() {
+		assertEquals(Arrays.asList(
+				"Story \"Test the steps\"",
+				"A step calling the helper 3 times",
+				"A step calling the helper 3 times",
+				"Only the stories and the steps are printed"), recorder.messages);
+	}
+	
+	void the_subclasses_print_only_the_stories_and_the_steps_of_the_hierarchy() {
+		Result result = new JUnitCore().run(InheritingSteps.class, DeclaringSteps.class);
+		assertTrue(result.getFailures().toString(), result.wasSuccessful());
+	}
+	
+	public static class WithSteps {
+		@Inject StepsRecorder recorder;
+		@Step void an_inherited_step() {}
+	}
+	
+	@RunWith(StoryRunner.class) @Modules(InheritingModule.class)
+	public static class InheritingSteps extends WithSteps {
+		@Story public void theInheritedSteps() {
+			an_inherited_step();
+			helper();
+			assertEquals(Arrays.asList("Story \"The inherited steps\"", "An inherited step", "An inherited step"), recorder.messages);
+		}
+		void helper() {}
+	}
+	
+	public static class WithHelpers {
+		@Inject StepsRecorder recorder;
+		void an_inherited_helper() {}
+	}
+	
+	@RunWith(StoryRunner.class) @Modules(DeclaringModule.class)
+	public static class DeclaringSteps extends WithHelpers {
+		@Story public void theDeclaredSteps() {
+			a_declared_step();
+			an_inherited_helper();
+			assertEquals(Arrays.asList("Story \"The declared steps\"", "A declared step", "A declared step"), recorder.messages);
+		}
+		@Step void a_declared_step() {}
+	}
+	
+	public static class InheritingModule extends Module {}
+	
+	public static class DeclaringModule extends Module {}
+	
+	public static class Module extends AbstractStoryModule {
+		@Override protected void configureStory() {
+			bind(StepsRecorder.class).in(Scopes.SINGLETON);
+			bindStoryPrinter(StepsRecorder.class);
+		}
+	}
+	
+	public static class StepsRecorder implements AbstractStoryModule.StoryPrinter {
+		
+		private final List<String> messages = new ArrayList<String>();
+		
+		@Override public void onStoryBegins(String className, String story) { messages.add(story); }
+		@Override public void onStepBegins(String className, String step) { messages.add(step); }
+		@Override public void onStepEnds(String className, String step) { messages.add(step); }
+		@Override public void onStoryEnds(String className, String story) { messages.add(story); }
+		
+	}
+	
+}
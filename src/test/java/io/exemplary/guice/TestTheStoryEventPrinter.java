@@ -0,0 +1,168 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+import org.junit.runner.notification.RunNotifier;
+
+import com.google.inject.Injector;
+import com.google.inject.Scopes;
+
+@RunWith(StoryRunner.class) @Modules(TestTheStoryEventPrinter.Module.class)
+public class TestTheStoryEventPrinter {
+
+	@Story
+	public void testTheStoryEventPrinter() throws Exception {
+		the_events_not_consumed_by_the_printer_are_never_converted();
+		the_events_consumed_are_converted_only_when_the_printer_asks_the_message();
+		the_default_printer_extended_receives_the_$1_events_of_the_methods_overridden(2);
+	}
+	
+	void the_events_not_consumed_by_the_printer_are_never_converted() throws Exception {
+		StoryRunner runner = new StoryRunner(NotConsumed.class);
+		Result result = run(runner);
+		assertTrue(result.getFailures().toString(), result.wasSuccessful());
+		assertEquals(0, runner.getInjector().getInstance(CountingConverter.class).conversions.get());
+	}
+	
+	void the_events_consumed_are_converted_only_when_the_printer_asks_the_message() throws Exception {
+		StoryRunner runner = new StoryRunner(Consumed.class);
+		Result result = run(runner);
+		assertTrue(result.getFailures().toString(), result.wasSuccessful());
+		Injector injector = runner.getInjector();
+		List<StoryEvent> events = injector.getInstance(StepsPrinter.class).events;
+		AtomicInteger conversions = injector.getInstance(CountingConverter.class).conversions;
+		assertEquals(2, events.size());
+		assertEquals(0, conversions.get());
+		assertEquals("A step with 1", events.get(0).getMessage());
+		assertEquals("A step with 1", events.get(0).getMessage());
+		assertEquals(1, conversions.get());
+	}
+	
+	void the_default_printer_extended_receives_the_$1_events_of_the_methods_overridden(int events) throws Exception {
+		StoryRunner runner = new StoryRunner(Extended.class);
+		Result result = run(runner);
+		assertTrue(result.getFailures().toString(), result.wasSuccessful());
+		List<String> steps = runner.getInjector().getInstance(StepEndsPrinter.class).steps;
+		assertEquals(events, steps.size());
+		assertEquals("A step with 1", steps.get(0));
+		assertEquals("A step with 2", steps.get(1));
+	}
+	
+	private Result run(TestRunner runner) {
+		Result result = new Result();
+		RunNotifier notifier = new RunNotifier();
+		notifier.addListener(result.createListener());
+		runner.run(notifier);
+		return result;
+	}
+	
+	@RunWith(StoryRunner.class) @Modules(NotConsumingModule.class)
+	public static class NotConsumed {
+		@Story public void aStory() {
+			a_step_with_$1(1);
+			a_step_with_$1(2);
+		}
+		void a_step_with_$1(int value) {}
+	}
+	
+	@RunWith(StoryRunner.class) @Modules(ConsumingModule.class)
+	public static class Consumed {
+		@Story public void aStory() {
+			a_step_with_$1(1);
+			a_step_with_$1(2);
+		}
+		void a_step_with_$1(int value) {}
+	}
+	
+	@RunWith(StoryRunner.class) @Modules(ExtendedModule.class)
+	public static class Extended {
+		@Story public void aStory() {
+			a_step_with_$1(1);
+			a_step_with_$1(2);
+		}
+		void a_step_with_$1(int value) {}
+	}
+	
+	public static class CountingConverter extends AbstractStoryModule.StoryConverter.Default {
+		final AtomicInteger conversions = new AtomicInteger();
+		@Override public String convertClass(Class<?> clazz) {
+			conversions.incrementAndGet();
+			return super.convertClass(clazz);
+		}
+		@Override public String convertMethod(Method method, Object[] arguments) {
+			conversions.incrementAndGet();
+			return super.convertMethod(method, arguments);
+		}
+	}
+	
+	public static class NothingPrinter implements StoryEventPrinter {
+		@Override public boolean consumes(StoryEvent.Type type) { return false; }
+		@Override public void onEvent(StoryEvent event) { fail("The event " + event.getType() + " is not consumed"); }
+		@Override public void onStoryBegins(String className, String story) {}
+		@Override public void onStepBegins(String className, String step) {}
+		@Override public void onStepEnds(String className, String step) {}
+		@Override public void onStoryEnds(String className, String story) {}
+	}
+	
+	public static class StepsPrinter extends NothingPrinter {
+		final List<StoryEvent> events = new CopyOnWriteArrayList<StoryEvent>();
+		@Override public boolean consumes(StoryEvent.Type type) { return type == StoryEvent.Type.STEP_BEGINS; }
+		@Override public void onEvent(StoryEvent event) { events.add(event); }
+	}
+	
+	public static class StepEndsPrinter extends AbstractStoryModule.StoryPrinter.Default {
+		final List<String> steps = new CopyOnWriteArrayList<String>();
+		@Override public void onStepEnds(String className, String step) { steps.add(step); }
+	}
+	
+	public static class NotConsumingModule extends AbstractStoryModule {
+		@Override protected void configureStory() {
+			bind(CountingConverter.class).in(Scopes.SINGLETON);
+			bindStoryConverter(CountingConverter.class);
+			bindStoryPrinter(NothingPrinter.class);
+		}
+	}
+	
+	public static class ConsumingModule extends AbstractStoryModule {
+		@Override protected void configureStory() {
+			bind(CountingConverter.class).in(Scopes.SINGLETON);
+			bind(StepsPrinter.class).in(Scopes.SINGLETON);
+			bindStoryConverter(CountingConverter.class);
+			bindStoryPrinter(StepsPrinter.class);
+		}
+	}
+	
+	public static class ExtendedModule extends AbstractStoryModule {
+		@Override protected void configureStory() {
+			bind(StepEndsPrinter.class).in(Scopes.SINGLETON);
+			bindStoryPrinter(StepEndsPrinter.class);
+		}
+	}
+	
+	public static class Module extends AbstractStoryModule {
+		@Override protected void configureStory() {}
+	}
+	
+}
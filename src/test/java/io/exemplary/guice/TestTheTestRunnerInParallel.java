@@ -0,0 +1,83 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.google.inject.Scopes;
+
+@RunWith(TestRunner.class) @Modules(TestTheTestRunnerInParallel.Module.class) @Parallel(threads = 2)
+public class TestTheTestRunnerInParallel {
+
+	private static final CountDownLatch latch = new CountDownLatch(2);
+	
+	@Inject private Interceptor interceptor;
+	
+	@Test
+	public void testTheFirstChild() throws InterruptedException {
+		checkTheInterceptorRunsOnTheSameThread("testTheFirstChild");
+		checkTheChildrenRunConcurrently();
+	}
+	
+	@Test
+	public void testTheSecondChild() throws InterruptedException {
+		checkTheInterceptorRunsOnTheSameThread("testTheSecondChild");
+		checkTheChildrenRunConcurrently();
+	}
+	
+	private void checkTheInterceptorRunsOnTheSameThread(String methodName) {
+		assertEquals(methodName, interceptor.method.get().getName());
+	}
+	
+	private void checkTheChildrenRunConcurrently() throws InterruptedException {
+		latch.countDown();
+		assertTrue("The tests must run concurrently", latch.await(10, TimeUnit.SECONDS));
+	}
+	
+	public static class Module extends AbstractTestModule {
+		@Override
+		protected void configureTest() {
+			bind(Interceptor.class).in(Scopes.SINGLETON);
+			bindTestInterceptor(Interceptor.class);
+		}
+	}
+	
+	public static class Interceptor extends TestInterceptor {
+		
+		private final ThreadLocal<Method> method = new ThreadLocal<Method>();
+
+		@Override
+		public void beforeTestRuns(Method method) {
+			this.method.set(method);
+		}
+
+		@Override
+		public void afterTestRuns(Method method) {
+			this.method.remove();
+		}
+		
+	}
+
+}
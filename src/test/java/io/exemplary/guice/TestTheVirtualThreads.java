@@ -0,0 +1,53 @@
+/**
+ * Copyright 2017 Alessandro Simi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.exemplary.guice;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Method;
+
+import org.junit.runner.RunWith;
+
+@RunWith(StoryRunner.class) @Modules(TestTheVirtualThreads.Module.class)
+@Parallel(threads = 2, virtual = true)
+public class TestTheVirtualThreads {
+
+	@Story
+	public void testTheFirstStoryOnAVirtualThread() throws Exception {
+		the_story_runs_on_a_virtual_thread_when_the_jvm_supports_them();
+	}
+	
+	@Story
+	public void testTheSecondStoryOnAVirtualThread() throws Exception {
+		the_story_runs_on_a_virtual_thread_when_the_jvm_supports_them();
+	}
+	
+	void the_story_runs_on_a_virtual_thread_when_the_jvm_supports_them() throws Exception {
+		Thread thread = Thread.currentThread();
+		assertTrue(thread.getName(), thread.getName().startsWith(TestTheVirtualThreads.class.getSimpleName() + "-"));
+		boolean supported = !(NamedThreadFactory.create("supported", true) instanceof NamedThreadFactory);
+		assertEquals(supported, supported && (Boolean) isVirtual().invoke(thread));
+	}
+	
+	private Method isVirtual() throws NoSuchMethodException {
+		return Thread.class.getMethod("isVirtual");
+	}
+	
+	public static class Module extends AbstractStoryModule {
+		@Override protected void configureStory() {}
+	}
+	
+}